@@ -5,6 +5,9 @@ import main.view.CarRentalGUI;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author ProgrammingGeek - Njoh Noh Prince Junior(Software Eng. and Developer)
@@ -24,8 +27,29 @@ public class Main {
             e.printStackTrace();
         }
 
-        // Create controller instance
-        Controller controller = new Controller();
+        // Open the controller persisted in the data directory. Working on without it would lose every change, so
+        // the user is told and the application stops instead.
+        File dataDirectory = new File("data");
+        Controller controller;
+        try {
+            controller = Controller.open(dataDirectory);
+            // Snapshot every five minutes, or sooner once 4 MB of changes are journaled
+            controller.startCheckpoints(5, TimeUnit.MINUTES, 4 * 1024 * 1024);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(null, "Could not open the data in " + dataDirectory.getAbsolutePath()
+                    + ":\n" + e + "\n\nThe application will close so that no changes are lost.",
+                    "Car Rental System", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                controller.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
 
         // Create and show GUI
         EventQueue.invokeLater(() -> {
@@ -0,0 +1,37 @@
+package main.analytics;
+
+/**
+ * How much of a period one car was out on rent, as computed by RentalAnalytics
+ */
+
+public class CarUtilization {
+
+    private final int carId;
+    private final String brand;
+    private final long rentedDays;
+    private final double utilization;
+
+    CarUtilization(int carId, String brand, long rentedDays, double utilization) {
+        this.carId = carId;
+        this.brand = brand;
+        this.rentedDays = rentedDays;
+        this.utilization = utilization;
+    }
+
+    public int getCarId() {
+        return carId;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public long getRentedDays() {
+        return rentedDays;
+    }
+
+    // Share of the period the car was rented, between 0 and 1
+    public double getUtilization() {
+        return utilization;
+    }
+}
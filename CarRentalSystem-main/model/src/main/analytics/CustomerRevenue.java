@@ -0,0 +1,31 @@
+package main.analytics;
+
+/**
+ * Total spent on rentals by one customer, as computed by RentalAnalytics
+ */
+
+public class CustomerRevenue {
+
+    private final int customerId;
+    private final long revenue;
+    private final long rentals;
+
+    CustomerRevenue(int customerId, long revenue, long rentals) {
+        this.customerId = customerId;
+        this.revenue = revenue;
+        this.rentals = rentals;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public long getRevenue() {
+        return revenue;
+    }
+
+    // Number of rentals
+    public long getRentals() {
+        return rentals;
+    }
+}
@@ -0,0 +1,56 @@
+package main.analytics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Revenue of every brand on every day of a period, as computed by RentalAnalytics
+ */
+
+public class DailyRevenue {
+
+    private final List<String> brands;
+    private final int firstDay;
+    private final long[][] revenue;
+
+    DailyRevenue(List<String> brands, int firstDay, long[][] revenue) {
+        this.brands = Collections.unmodifiableList(brands);
+        this.firstDay = firstDay;
+        this.revenue = revenue;
+    }
+
+    public List<String> getBrands() {
+        return brands;
+    }
+
+    // First day of the period, in days since 1970-01-01
+    public int getFirstDay() {
+        return firstDay;
+    }
+
+    public int getDayCount() {
+        return revenue.length == 0 ? 0 : revenue[0].length;
+    }
+
+    /**
+     * @param brandIndex index into getBrands()
+     * @param day in days since 1970-01-01
+     * @return
+     */
+    public long getRevenue(int brandIndex, int day) {
+        int offset = day - firstDay;
+        if (offset < 0 || offset >= getDayCount()) {
+            return 0;
+        }
+        return revenue[brandIndex][offset];
+    }
+
+    // Revenue of a brand over the whole period
+    public long getTotal(int brandIndex) {
+        long total = 0;
+        for (long value : revenue[brandIndex]) {
+            total += value;
+        }
+        return total;
+    }
+}
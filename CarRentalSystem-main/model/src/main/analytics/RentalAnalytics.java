@@ -0,0 +1,193 @@
+package main.analytics;
+
+import main.controller.Controller;
+import main.controller.RentalLedger;
+import main.model.Car;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Revenue, utilization and customer reports over the rental ledger.
+ *
+ * Every report is a single pass over the ledger rows with a parallel stream: the rows are cut into a few
+ * contiguous parts per worker of the fork/join pool, each part is summed into its own primitive array, and the
+ * arrays are added up at the end, so no locks or boxed values are involved and the pass scales with the number
+ * of cores. The reports run in the
+ * pool of the calling thread, so submitting one to a ForkJoinPool of a given size bounds its parallelism.
+ *
+ * Brands are looked up once per car before the pass; rentals of cars that are no longer in the fleet are
+ * reported under REMOVED_BRAND.
+ */
+
+public class RentalAnalytics {
+
+    public static final String REMOVED_BRAND = "(removed)";
+
+    private static final int PARTS_PER_WORKER = 2;
+    private static final int MIN_PART_ROWS = 10000;
+
+    private final RentalLedger ledger;
+    private final List<String> brands = new ArrayList<>();
+    // Number of ledger rows reported on, so every report sees the same rentals even while new ones come in
+    private final int rows;
+    // Index into brands of every car id, 0 (REMOVED_BRAND) for ids not in the fleet
+    private final int[] brandOfCar;
+    private final boolean[] inFleet;
+
+    /**
+     * @param ledger rentals to report on
+     * @param fleet the cars currently in the system
+     */
+    public RentalAnalytics(RentalLedger ledger, Collection<Car> fleet) {
+        this.ledger = ledger;
+        int maxCarId = 0;
+        for (Car car : fleet) {
+            maxCarId = Math.max(maxCarId, car.getCarId());
+        }
+        rows = ledger.size();
+        maxCarId = Math.max(maxCarId, IntStream.range(0, rows).parallel().map(ledger::getCarId).max().orElse(0));
+        brandOfCar = new int[maxCarId + 1];
+        inFleet = new boolean[maxCarId + 1];
+        Map<String, Integer> brandIndex = new HashMap<>();
+        brandIndex.put(REMOVED_BRAND, 0);
+        brands.add(REMOVED_BRAND);
+        for (Car car : fleet) {
+            Integer index = brandIndex.get(car.getBrand());
+            if (index == null) {
+                index = brands.size();
+                brandIndex.put(car.getBrand(), index);
+                brands.add(car.getBrand());
+            }
+            brandOfCar[car.getCarId()] = index;
+            inFleet[car.getCarId()] = true;
+        }
+    }
+
+    // Reports over the ledger and fleet of a controller
+    public static RentalAnalytics of(Controller controller) {
+        return new RentalAnalytics(controller.getRentalLedger(), controller.getAllCars());
+    }
+
+    /**
+     * Revenue of every brand on every day, counting the amount of a rental on the day it started
+     * @return
+     */
+    public DailyRevenue revenueByBrandPerDay() {
+        if (rows == 0) {
+            return new DailyRevenue(brands, 0, new long[brands.size()][0]);
+        }
+        int firstDay = IntStream.range(0, rows).parallel().map(ledger::getStartDay).min().getAsInt();
+        int lastDay = IntStream.range(0, rows).parallel().map(ledger::getStartDay).max().getAsInt();
+        int dayCount = lastDay - firstDay + 1;
+        int brandCount = brands.size();
+        long[] totals = sumRows(brandCount * dayCount,
+                (sums, row) -> sums[brandOfCar[ledger.getCarId(row)] * dayCount + ledger.getStartDay(row) - firstDay]
+                        += ledger.getAmount(row));
+        long[][] revenue = new long[brandCount][];
+        for (int brand = 0; brand < brandCount; brand++) {
+            revenue[brand] = new long[dayCount];
+            System.arraycopy(totals, brand * dayCount, revenue[brand], 0, dayCount);
+        }
+        return new DailyRevenue(brands, firstDay, revenue);
+    }
+
+    /**
+     * Share of the days in [fromDay, toDay) that each car of the fleet was out on rent. A rental occupies its car
+     * from its start day until the day it came back, at least one day; an active rental occupies it until today.
+     * @param fromDay first day, in days since 1970-01-01
+     * @param toDay day after the last one
+     * @param today
+     * @return one entry per car of the fleet, the most used first
+     */
+    public List<CarUtilization> utilizationPerCar(int fromDay, int toDay, int today) {
+        long[] rentedDays = sumRows(brandOfCar.length,
+                (sums, row) -> {
+                    int start = ledger.getStartDay(row);
+                    int returnDay = ledger.getReturnDay(row);
+                    int end = Math.max(start + 1, returnDay == RentalLedger.NOT_RETURNED ? today + 1 : returnDay);
+                    int overlap = Math.min(end, toDay) - Math.max(start, fromDay);
+                    if (overlap > 0) {
+                        sums[ledger.getCarId(row)] += overlap;
+                    }
+                });
+        int period = Math.max(1, toDay - fromDay);
+        List<CarUtilization> result = new ArrayList<>();
+        for (int carId = 0; carId < inFleet.length; carId++) {
+            if (inFleet[carId]) {
+                result.add(new CarUtilization(carId, brands.get(brandOfCar[carId]), rentedDays[carId],
+                        Math.min(1.0, (double) rentedDays[carId] / period)));
+            }
+        }
+        result.sort(Comparator.comparingDouble(CarUtilization::getUtilization).reversed());
+        return result;
+    }
+
+    /**
+     * The customers who spent the most on rentals
+     * @param k number of customers to return
+     * @return at most k entries, the highest revenue first
+     */
+    public List<CustomerRevenue> topCustomers(int k) {
+        int maxCustomerId = IntStream.range(0, rows).parallel().map(ledger::getCustomerId).max().orElse(0);
+        // Revenue and number of rentals of each customer id, side by side
+        long[] totals = sumRows(2 * (maxCustomerId + 1),
+                (sums, row) -> {
+                    int customerId = ledger.getCustomerId(row);
+                    sums[2 * customerId] += ledger.getAmount(row);
+                    sums[2 * customerId + 1]++;
+                });
+        // Min-heap of the best k so far, so picking them costs O(n log k) instead of a full sort
+        PriorityQueue<CustomerRevenue> best = new PriorityQueue<>(Comparator.comparingLong(CustomerRevenue::getRevenue));
+        for (int customerId = 0; customerId <= maxCustomerId; customerId++) {
+            long rentals = totals[2 * customerId + 1];
+            if (rentals == 0) {
+                continue;
+            }
+            if (best.size() < k) {
+                best.add(new CustomerRevenue(customerId, totals[2 * customerId], rentals));
+            } else if (k > 0 && totals[2 * customerId] > best.peek().getRevenue()) {
+                best.poll();
+                best.add(new CustomerRevenue(customerId, totals[2 * customerId], rentals));
+            }
+        }
+        List<CustomerRevenue> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingLong(CustomerRevenue::getRevenue).reversed());
+        return result;
+    }
+
+    // Method to let the accumulator add every row into an array of the given length, in parallel
+    private long[] sumRows(int length, ObjIntConsumer<long[]> accumulator) {
+        int parallelism = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism()
+                : ForkJoinPool.getCommonPoolParallelism();
+        // A few parts per worker balance the load without allocating an array per handful of rows
+        int parts = Math.max(1, Math.min(PARTS_PER_WORKER * parallelism, rows / MIN_PART_ROWS));
+        return IntStream.range(0, parts).parallel()
+                .mapToObj(part -> {
+                    long[] sums = new long[length];
+                    int end = (int) ((long) rows * (part + 1) / parts);
+                    for (int row = (int) ((long) rows * part / parts); row < end; row++) {
+                        accumulator.accept(sums, row);
+                    }
+                    return sums;
+                })
+                .reduce(RentalAnalytics::add)
+                .orElseGet(() -> new long[length]);
+    }
+
+    private static long[] add(long[] sums, long[] other) {
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] += other[i];
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,85 @@
+package main.benchmark;
+
+import main.analytics.RentalAnalytics;
+import main.controller.RentalLedger;
+import main.model.Car;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Runs the rental reports over a synthetic history (10 million rentals by default, spread over five years) with
+ * fork/join pools of growing size, and prints the throughput in rentals per second for each pool size.
+ *
+ * Run with: java -Xmx2g -cp out\production\CarRentalModule main.benchmark.AnalyticsBenchmark [rentals] [cars] [customers]
+ */
+
+public class AnalyticsBenchmark {
+
+    private static final int BRANDS = 20;
+    private static final int DAYS = 5 * 365;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int rentals = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int cars = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int customers = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        List<Car> fleet = new ArrayList<>(cars);
+        for (int i = 1; i <= cars; i++) {
+            fleet.add(new Car(i, "Model " + i % 50, "Brand " + i % BRANDS, "PL" + i, 20 + i % 80, 10000, "Color " + i % 8));
+        }
+        Random random = new Random(42);
+        RentalLedger.Builder history = new RentalLedger.Builder();
+        int firstDay = RentalLedger.epochDay(new Date()) - DAYS;
+        long begin = System.nanoTime();
+        for (int i = 0; i < rentals; i++) {
+            // Rows come in time order, as they do in a live ledger
+            int startDay = firstDay + (int) ((long) i * DAYS / rentals);
+            int days = 1 + random.nextInt(14);
+            int carId = 1 + random.nextInt(cars);
+            history.add(carId, 1 + random.nextInt(customers), startDay, days, days * (20 + carId % 80),
+                    startDay + days + (random.nextInt(10) == 0 ? 1 : 0));
+        }
+        RentalLedger ledger = history.build();
+        System.out.printf("%,d rentals of %,d cars by %,d customers generated in %.1f s%n",
+                rentals, cars, customers, (System.nanoTime() - begin) / 1e9);
+
+        RentalAnalytics analytics = new RentalAnalytics(ledger, fleet);
+        int today = firstDay + DAYS;
+        System.out.printf("%-8s %22s %22s %22s%n", "threads", "revenue/brand/day", "utilization/car", "top 10 customers");
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> poolSizes = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            poolSizes.add(threads);
+        }
+        poolSizes.add(cores);
+        for (int threads : poolSizes) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                System.out.printf("%-8d %22s %22s %22s%n", threads,
+                        throughput(pool, rentals, analytics::revenueByBrandPerDay),
+                        throughput(pool, rentals, () -> analytics.utilizationPerCar(today - 365, today, today)),
+                        throughput(pool, rentals, () -> analytics.topCustomers(10)));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Best of a few runs, after one warm-up run, as millions of rentals per second
+    private static String throughput(ForkJoinPool pool, int rentals, Supplier<?> report) throws Exception {
+        pool.submit(report::get).get();
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long begin = System.nanoTime();
+            pool.submit(report::get).get();
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        return String.format("%.0f M/s (%.0f ms)", rentals / (best / 1e9) / 1e6, best / 1e6);
+    }
+}
@@ -0,0 +1,145 @@
+package main.benchmark;
+
+import main.model.Car;
+import main.model.Customer;
+import main.persistence.BinaryInput;
+import main.persistence.BinaryOutput;
+import main.persistence.EntityCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compares EntityCodec with java.io.Serializable: bytes per entity, and encode/decode throughput.
+ *
+ * Run with: java -cp out\production\CarRentalModule main.benchmark.CodecBenchmark [entities]
+ */
+
+public class CodecBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<Customer> customers = new ArrayList<>();
+        List<Car> cars = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer(i + 1, "Customer " + i, 20 + i % 50, "LIC" + i, "NID" + i);
+            Car car = new Car(i + 1, "Model " + i % 200, "Brand " + i % 40, "PL-" + i, 50 + i % 400, 5000 + i, "Color " + i % 12);
+            // Every tenth customer rents two cars, which Serializable follows through the renter's list
+            if (i % 10 == 0 && i > 0) {
+                rent(customer, car);
+                rent(customer, cars.get(i - 1));
+            }
+            customers.add(customer);
+            cars.add(car);
+        }
+
+        System.out.printf("%d cars, %d customers%n", count, count);
+        System.out.printf("%-26s %12s %12s%n", "", "codec", "serializable");
+        System.out.printf("%-26s %12.1f %12.1f%n", "bytes per car",
+                (double) codecCars(cars).length / count, (double) serializedSize(cars) / count);
+        System.out.printf("%-26s %12.1f %12.1f%n", "bytes per customer",
+                (double) codecCustomers(customers).length / count, (double) serializedSize(customers) / count);
+
+        byte[] encodedCars = codecCars(cars);
+        double codecEncode = 0;
+        double codecDecode = 0;
+        double serialEncode = 0;
+        double serialDecode = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            codecCars(cars);
+            codecEncode = best(codecEncode, count, start);
+
+            start = System.nanoTime();
+            decodeCars(encodedCars, count);
+            codecDecode = best(codecDecode, count, start);
+
+            start = System.nanoTime();
+            List<byte[]> serialized = serializeEach(cars);
+            serialEncode = best(serialEncode, count, start);
+
+            start = System.nanoTime();
+            deserializeEach(serialized);
+            serialDecode = best(serialDecode, count, start);
+        }
+        System.out.printf("%-26s %12.0f %12.0f%n", "cars encoded per second", codecEncode, serialEncode);
+        System.out.printf("%-26s %12.0f %12.0f%n", "cars decoded per second", codecDecode, serialDecode);
+    }
+
+    private static void rent(Customer customer, Car car) {
+        customer.getCarsRented().add(car);
+        car.setCurrentUser(customer);
+        car.setDateOfRent(new Date());
+        car.setNumberOfDays(3);
+        car.setTotalRentPrice();
+    }
+
+    private static double best(double previous, int count, long start) {
+        return Math.max(previous, count / ((System.nanoTime() - start) / 1e9));
+    }
+
+    private static byte[] codecCars(List<Car> cars) {
+        BinaryOutput out = new BinaryOutput(cars.size() * 48);
+        for (Car car : cars) {
+            EntityCodec.writeCar(out, car);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] codecCustomers(List<Customer> customers) {
+        BinaryOutput out = new BinaryOutput(customers.size() * 32);
+        for (Customer customer : customers) {
+            EntityCodec.writeCustomer(out, customer);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Car> decodeCars(byte[] bytes, int count) {
+        BinaryInput in = new BinaryInput(ByteBuffer.wrap(bytes));
+        List<Car> cars = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            cars.add(EntityCodec.readCar(in, null));
+        }
+        return cars;
+    }
+
+    // Each entity written on its own, as saving a single car or customer would
+    private static long serializedSize(List<?> entities) throws IOException {
+        long size = 0;
+        for (byte[] bytes : serializeEach(entities)) {
+            size += bytes.length;
+        }
+        return size;
+    }
+
+    private static List<byte[]> serializeEach(List<?> entities) throws IOException {
+        List<byte[]> result = new ArrayList<>(entities.size());
+        for (Object entity : entities) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(entity);
+            }
+            result.add(bytes.toByteArray());
+        }
+        return result;
+    }
+
+    private static List<Object> deserializeEach(List<byte[]> serialized) throws IOException, ClassNotFoundException {
+        List<Object> result = new ArrayList<>(serialized.size());
+        for (byte[] bytes : serialized) {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                result.add(in.readObject());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package main.benchmark;
+
+import main.controller.CommandPipeline;
+import main.controller.Controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Simulates a pickup rush: many clerks rent and return cars at the same moment against a journaled Controller,
+ * once calling the locked Controller directly and once through the single-writer CommandPipeline.
+ * Prints throughput and latency percentiles of each.
+ *
+ * Run with: java -cp out\production\CarRentalModule main.benchmark.PipelineBenchmark [clerks] [operations per clerk]
+ */
+
+public class PipelineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clerks = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        System.out.printf("%d clerks, %d rent/return operations each%n", clerks, operations);
+        System.out.printf("%-10s %12s %10s %10s %10s%n", "mode", "ops/s", "p50 us", "p99 us", "max us");
+        for (boolean pipelined : new boolean[] {false, true}) {
+            Path directory = Files.createTempDirectory("pipeline-benchmark");
+            try {
+                run(directory, clerks, operations, pipelined);
+            } finally {
+                delete(directory);
+            }
+        }
+    }
+
+    private static void run(Path directory, int clerks, int operations, boolean pipelined) throws Exception {
+        Controller controller = Controller.open(directory.toFile());
+        for (int i = 0; i < clerks; i++) {
+            controller.addNewCustomer("Clerk customer " + i, 30, "LIC" + i, "NID" + i);
+            controller.addNewCar("Model " + i, "Brand " + i % 5, "PL" + i, 50 + i, 10000, "Color " + i % 4);
+        }
+        CommandPipeline pipeline = pipelined ? new CommandPipeline(controller, 1024, 256) : null;
+
+        ExecutorService pool = Executors.newFixedThreadPool(clerks);
+        CountDownLatch start = new CountDownLatch(1);
+        List<long[]> latencies = new ArrayList<>();
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int clerk = 0; clerk < clerks; clerk++) {
+            long[] clerkLatencies = new long[operations];
+            latencies.add(clerkLatencies);
+            String license = "LIC" + clerk;
+            String plate = "PL" + clerk;
+            done.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < operations; i++) {
+                    long begin = System.nanoTime();
+                    if (pipeline == null) {
+                        if (i % 2 == 0) {
+                            controller.rentCar(license, plate, 1);
+                        } else {
+                            controller.releaseCarWithMessage(plate);
+                        }
+                    } else {
+                        (i % 2 == 0 ? pipeline.rentCar(license, plate, 1) : pipeline.releaseCar(plate)).join();
+                    }
+                    clerkLatencies[i] = System.nanoTime() - begin;
+                }
+            }, pool));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        controller.close();
+
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%-10s %12.0f %10.0f %10.0f %10.0f%n", pipelined ? "pipeline" : "locked",
+                all.length / seconds, all[all.length / 2] / 1e3, all[(int) (all.length * 0.99)] / 1e3, all[all.length - 1] / 1e3);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
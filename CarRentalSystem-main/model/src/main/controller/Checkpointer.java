@@ -0,0 +1,77 @@
+package main.controller;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes snapshots of a Controller in the background and deletes the journal segments they make unnecessary,
+ * so the work left for the next startup stays bounded.
+ *
+ * A checkpoint is due once the interval has passed since the last one, or once the current journal segment has
+ * grown past the size limit. Changes are only held off while the journal is rotated and the state is frozen;
+ * encoding, writing and fsyncing the snapshot happen afterwards, while the Controller carries on (a car or
+ * customer changed in the meantime is encoded as it was when the state was frozen).
+ */
+
+class Checkpointer {
+
+    // How often the triggers are checked
+    private static final long POLL_MILLIS = 1000;
+
+    private final Controller controller;
+    private final long intervalMillis;
+    private final long maxJournalBytes;
+    private final ScheduledExecutorService scheduler;
+    private long lastCheckpoint;
+
+    /**
+     * @param controller
+     * @param intervalMillis time between checkpoints
+     * @param maxJournalBytes size of the current journal segment that triggers a checkpoint early
+     */
+    Checkpointer(Controller controller, long intervalMillis, long maxJournalBytes) {
+        this.controller = controller;
+        this.intervalMillis = intervalMillis;
+        this.maxJournalBytes = maxJournalBytes;
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "Checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
+    void start() {
+        long poll = Math.min(POLL_MILLIS, intervalMillis);
+        scheduler.scheduleWithFixedDelay(this::checkpointIfDue, poll, poll, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkpointIfDue() {
+        if (!controller.isJournaled()) {
+            return;
+        }
+        boolean due = System.currentTimeMillis() - lastCheckpoint >= intervalMillis
+                || controller.journalSize() >= maxJournalBytes;
+        if (!due) {
+            return;
+        }
+        lastCheckpoint = System.currentTimeMillis();
+        try {
+            controller.checkpoint();
+        } catch (IOException | RuntimeException e) {
+            controller.reportFailure("Checkpoint", e);
+        }
+    }
+
+    // Stops checking the triggers and waits for a checkpoint in progress to finish
+    void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
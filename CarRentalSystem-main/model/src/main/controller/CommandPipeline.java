@@ -0,0 +1,285 @@
+package main.controller;
+
+import main.model.Car;
+import main.model.Customer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Single-writer mode for a Controller. Every change is submitted as a command into a bounded queue and applied by
+ * one writer thread, so callers never contend on the Controller's locks.
+ *
+ * The writer drains whatever commands are waiting, up to a batch limit, applies them in one go, journals the whole
+ * batch with a single write and fsync and then completes the future of each command. A command's future therefore
+ * only completes once its change is durable. When the queue is full, submitting blocks, which keeps latency bounded
+ * during bursts instead of letting a backlog build up.
+ *
+ * If the journal write fails, the batch's changes have already been applied in memory and cannot be taken back.
+ * Every command of the batch then fails with the journal's exception, the pipeline stops, and the Controller
+ * refuses any further operation, so memory never runs ahead of the journal for long; the failure is also reported
+ * through the Controller's listeners.
+ */
+
+public class CommandPipeline implements AutoCloseable {
+
+    // How long a submit blocked on a full queue waits before checking whether the pipeline closed
+    private static final long OFFER_MILLIS = 100;
+
+    private final Controller controller;
+    private final BlockingQueue<Command<?>> queue;
+    private final int maxBatch;
+    private final Thread writer;
+    // Number of batches applied, counted under the Controller's write lock together with the batch
+    private volatile long applied;
+    private volatile Snapshot snapshot;
+    private volatile boolean closed;
+
+    /**
+     * Starts the writer thread
+     * @param controller
+     * @param capacity number of commands that can wait in the queue
+     * @param maxBatch most commands applied and journaled together
+     */
+    public CommandPipeline(Controller controller, int capacity, int maxBatch) {
+        this.controller = controller;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        snapshot = new Snapshot(controller, 0);
+        writer = new Thread(this::run, "Controller writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public CompletableFuture<Void> addCar(String name, String brand, String numberPlate, int rentPricePerDay, int costPrice, String color) {
+        return submit(() -> {
+            controller.addNewCar(name, brand, numberPlate, rentPricePerDay, costPrice, color);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> addCustomer(String name, int age, String licenseNumber, String nationalIDNumber) {
+        return submit(() -> {
+            controller.addNewCustomer(name, age, licenseNumber, nationalIDNumber);
+            return null;
+        });
+    }
+
+    public CompletableFuture<String> rentCar(String customerLicenseNumber, String carLicensePlateNumber, int numberOfDays) {
+        return submit(() -> controller.rentCar(customerLicenseNumber, carLicensePlateNumber, numberOfDays));
+    }
+
+    public CompletableFuture<List<RentalResult>> rentCars(String customerLicenseNumber, List<String> licensePlateNumbers, int numberOfDays) {
+        return submit(() -> controller.rentCars(customerLicenseNumber, licensePlateNumbers, numberOfDays));
+    }
+
+    public CompletableFuture<String> holdCar(String customerLicenseNumber, String licensePlateNumber, long ttl, TimeUnit unit) {
+        return submit(() -> controller.holdCar(customerLicenseNumber, licensePlateNumber, ttl, unit));
+    }
+
+    public CompletableFuture<String> releaseCar(String licensePlateNumber) {
+        return submit(() -> controller.releaseCarWithMessage(licensePlateNumber));
+    }
+
+    public CompletableFuture<String> removeCar(String licensePlateNumber) {
+        return submit(() -> controller.removeCarWithMessage(licensePlateNumber));
+    }
+
+    public CompletableFuture<String> removeCustomer(String licenseNumber) {
+        return submit(() -> controller.removeCustomerWithMessage(licenseNumber));
+    }
+
+    /**
+     * Applies changes to a car on the writer thread, through its setters
+     * @param licensePlateNumber
+     * @param change
+     * @return completes with false when there is no car with that number plate
+     */
+    public CompletableFuture<Boolean> modifyCar(String licensePlateNumber, Consumer<Car> change) {
+        return submit(() -> {
+            Car car = controller.findCar(licensePlateNumber);
+            if (car == null) {
+                return false;
+            }
+            change.accept(car);
+            return true;
+        });
+    }
+
+    // The state as of the last applied batch, built on the first call after a batch and then shared; waits for
+    // a batch being applied to finish
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current.version != applied) {
+            current = controller.readTogether(() -> new Snapshot(controller, applied));
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        if (closed) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+        Command<T> command = new Command<>(operation);
+        try {
+            // Waits for room, but not past the writer stopping, as nothing would take the command then
+            while (!queue.offer(command, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    throw new IllegalStateException("Pipeline is closed");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            command.future.completeExceptionally(e);
+            return command.future;
+        }
+        // The pipeline may have closed since the check above, after the writer and close() took their last look
+        // at the queue; a command still in it then fails here instead of waiting forever
+        if (closed && queue.remove(command)) {
+            command.future.completeExceptionally(new IllegalStateException("Pipeline is closed"));
+        }
+        return command.future;
+    }
+
+    private void run() {
+        List<Command<?>> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // Nothing in the pipeline interrupts the writer, so whoever did wants it to stop
+                closed = true;
+                Thread.currentThread().interrupt();
+                break;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            try {
+                controller.applyBatch(() -> {
+                    for (Command<?> command : batch) {
+                        command.apply();
+                    }
+                    applied++;
+                });
+                for (Command<?> command : batch) {
+                    command.complete();
+                }
+            } catch (RuntimeException e) {
+                // None of the batch is durable, and the Controller no longer accepts changes
+                for (Command<?> command : batch) {
+                    command.future.completeExceptionally(e);
+                }
+                closed = true;
+                controller.reportFailure("Journal write", e);
+                break;
+            }
+            batch.clear();
+        }
+        failQueued();
+    }
+
+    // Stops accepting commands, applies the ones already queued and waits for the writer to finish
+    @Override
+    public void close() {
+        closed = true;
+        // An empty command wakes the writer up without interrupting it in the middle of a journal write. If the
+        // queue is full the writer is not waiting, and stops by itself once the queue is empty.
+        queue.offer(new Command<>(() -> null));
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                // The queued commands are still applied; the interrupt is kept for the caller
+                interrupted = true;
+            }
+        }
+        failQueued();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Method to fail the commands submitted while the pipeline was closing, which the writer will never apply
+    private void failQueued() {
+        Command<?> late;
+        while ((late = queue.poll()) != null) {
+            late.future.completeExceptionally(new IllegalStateException("Pipeline is closed"));
+        }
+    }
+
+    // A change waiting in the queue, with the outcome it will report once its batch is durable
+    private static class Command<T> {
+        private final Supplier<T> operation;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private RuntimeException failure;
+
+        Command(Supplier<T> operation) {
+            this.operation = operation;
+        }
+
+        void apply() {
+            try {
+                result = operation.get();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    /**
+     * Read-only view of the Controller as of one batch. The lists never change; the cars and customers in them are
+     * the live objects, which only the writer thread modifies.
+     */
+    public static class Snapshot {
+        private final long version;
+        private final List<Car> allCars;
+        private final List<Car> availableCars;
+        private final List<Car> rentedCars;
+        private final List<Customer> allCustomers;
+
+        private Snapshot(Controller controller, long version) {
+            this.version = version;
+            allCars = controller.getAllCars();
+            availableCars = controller.getAvailableCars();
+            rentedCars = controller.getRentedCars();
+            allCustomers = controller.getAllCustomers();
+        }
+
+        // Number of batches applied before this snapshot was taken
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Car> getAllCars() {
+            return allCars;
+        }
+
+        public List<Car> getAvailableCars() {
+            return availableCars;
+        }
+
+        public List<Car> getRentedCars() {
+            return rentedCars;
+        }
+
+        public List<Customer> getAllCustomers() {
+            return allCustomers;
+        }
+    }
+}
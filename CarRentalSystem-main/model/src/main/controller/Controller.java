@@ -1,57 +1,591 @@
 package main.controller;
 
+import main.model.AttributeDictionary;
 import main.model.Car;
+import main.model.CarListener;
+import main.model.CarStatus;
 import main.model.Customer;
+import main.model.CustomerListener;
+import main.model.Reservation;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Safe for concurrent use. Structural changes (adding, removing or modifying cars and customers) take the write
+ * side of a read/write lock. Rentals only take its read side plus the stripe locks of the car and of the customer,
+ * always in that order, so rentals of different cars run in parallel and a car can never be rented twice.
+ */
 
 public class Controller implements Serializable {
 
     // Attributes/fields declaration
     private final List<Car> allCars;
     private final List<Customer> allCustomers;
-    private final List<Car> rentedCars;
-    private final List<Car> availableCars;
+    // Rental status of every car, ordered by id; each car is in exactly one of these sets
+    private final Set<Car> rentedCars;
+    private final Set<Car> availableCars;
+    private final Set<Car> overdueCars;
+    // Index of every car in the system keyed by its number plate, and by its id
+    private final Map<String, Car> carsByPlate;
+    private final Map<Integer, Car> carsById;
+    // Secondary indexes of cars by name and by brand
+    private final transient TextIndex carsByName;
+    private final transient TextIndex carsByBrand;
+    // Sorted indexes of cars by rent price per day and by cost price, for range queries
+    private final transient PriceIndex carsByRentPrice;
+    private final transient PriceIndex carsByCostPrice;
+    // Rent price indexes of the available cars only, one per brand and one per color, used to suggest alternatives
+    private final Map<String, PriceIndex> availableByBrand;
+    private final Map<String, PriceIndex> availableByColor;
+    private final transient CarIndexUpdater carIndexUpdater;
+    // Unique indexes of every customer keyed by license number and by national ID number
+    private final Map<String, Customer> customersByLicense;
+    private final Map<String, Customer> customersByNationalID;
+    private final Map<Integer, Customer> customersById;
+    private final transient CustomerIndexUpdater customerIndexUpdater;
+    // Read-only copies handed out by the getters, shared between callers until the next change
+    private final transient SharedSnapshot<Car> allCarsView;
+    private final transient SharedSnapshot<Car> availableCarsView;
+    private final transient SharedSnapshot<Car> rentedCarsView;
+    private final transient SharedSnapshot<Customer> allCustomersView;
+    private final transient List<ControllerListener> listeners;
+    // Events raised on a thread while it holds the structure lock, delivered once it has let go of it
+    private final transient ThreadLocal<Deque<Consumer<ControllerListener>>> pendingEvents;
+    // Guards every collection above; rentals hold the read lock together with the car and customer stripes
+    private final ReentrantReadWriteLock structureLock;
+    private final transient LockStripes carLocks;
+    private final transient LockStripes customerLocks;
+    private final transient ReservationCalendar reservations;
+    private final transient RentalLedger ledger;
+    private final transient FleetCounters counters;
+    // Write-ahead journal of every change, null when the controller only lives in memory
+    private transient ControllerJournal journal;
+    private transient Path snapshotPath;
+    private transient Checkpointer checkpointer;
+    private final transient Map<Car, Hold> holds;
+    private transient DelayScheduler<Hold> holdTimer;
+    private transient DelayScheduler<Due> overdueScheduler;
+    // Snapshot being encoded, which must see every car and customer as it was before changing them; null if none
+    private transient volatile ControllerSnapshot.Capture capture;
+    // Set when a batch was applied but could not be journaled; memory is then ahead of the journal, and every
+    // further operation is refused so nothing builds on changes that a restart would lose
+    private transient volatile RuntimeException journalFailure;
+    // Taken by the thread writing a snapshot, so saveSnapshot() and the Checkpointer take turns
+    private final transient Object snapshotLock;
     private int carId;
     private int customerId;
+    private int reservationId;
 
     // Controller's constructor
     public Controller() {
         allCars = new ArrayList<>();
         allCustomers = new ArrayList<>();
-        rentedCars = new ArrayList<>();
-        availableCars = new ArrayList<>();
+        rentedCars = new ConcurrentSkipListSet<>(Comparator.comparingInt(Car::getCarId));
+        availableCars = new ConcurrentSkipListSet<>(Comparator.comparingInt(Car::getCarId));
+        overdueCars = new ConcurrentSkipListSet<>(Comparator.comparingInt(Car::getCarId));
+        carsByPlate = new HashMap<>();
+        carsById = new HashMap<>();
+        carsByName = new TextIndex();
+        carsByBrand = new TextIndex();
+        carsByRentPrice = new PriceIndex();
+        carsByCostPrice = new PriceIndex();
+        availableByBrand = new ConcurrentHashMap<>();
+        availableByColor = new ConcurrentHashMap<>();
+        carIndexUpdater = new CarIndexUpdater();
+        customersByLicense = new HashMap<>();
+        customersByNationalID = new HashMap<>();
+        customersById = new HashMap<>();
+        customerIndexUpdater = new CustomerIndexUpdater();
+        allCarsView = new SharedSnapshot<>(allCars);
+        availableCarsView = new SharedSnapshot<>(availableCars);
+        rentedCarsView = new SharedSnapshot<>(rentedCars);
+        allCustomersView = new SharedSnapshot<>(allCustomers);
+        listeners = new CopyOnWriteArrayList<>();
+        pendingEvents = ThreadLocal.withInitial(ArrayDeque::new);
+        structureLock = new ReentrantReadWriteLock();
+        carLocks = new LockStripes(64);
+        customerLocks = new LockStripes(64);
+        holds = new ConcurrentHashMap<>();
+        snapshotLock = new Object();
+        reservations = new ReservationCalendar();
+        ledger = new RentalLedger();
+        counters = new FleetCounters();
         carId = 1;
         customerId = 1;
+        reservationId = 1;
+    }
+
+    /**
+     * Opens a controller persisted in the given directory. Every change made through the controller is appended
+     * to the journal segments there. On startup the latest snapshot is loaded, and only the journal segments
+     * written after it are replayed.
+     * @param directory
+     * @return
+     * @throws IOException
+     */
+    public static Controller open(File directory) throws IOException {
+        Path path = directory.toPath();
+        Path snapshotPath = path.resolve("snapshot.bin");
+        Files.createDirectories(path);
+        Controller controller = new Controller();
+        long firstSegment = 1;
+        if (Files.exists(snapshotPath)) {
+            ControllerSnapshot snapshot = ControllerSnapshot.open(snapshotPath);
+            snapshot.restore(controller);
+            firstSegment = snapshot.getJournalSegment();
+        }
+        long lastSegment = ControllerJournal.replay(path, firstSegment, controller);
+        controller.journal = new ControllerJournal(path, lastSegment);
+        controller.snapshotPath = snapshotPath;
+        return controller;
+    }
+
+    /**
+     * Starts taking snapshots in the background, after which the journal segments they cover are deleted
+     * @param interval time between two checkpoints
+     * @param unit
+     * @param maxJournalBytes journal size that triggers a checkpoint before the interval has passed
+     */
+    public void startCheckpoints(long interval, TimeUnit unit, long maxJournalBytes) {
+        if (journal == null) {
+            throw new IllegalStateException("Controller was not opened from a directory");
+        }
+        if (checkpointer != null) {
+            checkpointer.stop();
+        }
+        checkpointer = new Checkpointer(this, unit.toMillis(interval), maxJournalBytes);
+        checkpointer.start();
+    }
+
+    /**
+     * Writes a snapshot of the current state next to the journal, so the next open() only has to replay
+     * the changes made after this point
+     * @throws IOException
+     */
+    public void saveSnapshot() throws IOException {
+        if (journal == null) {
+            throw new IllegalStateException("Controller was not opened from a directory");
+        }
+        checkpoint();
     }
 
-    // Method to add a new car to the system
+    // Method to stop checkpoints, snapshot the state and close the journal; the controller must not be changed afterwards
+    public void close() throws IOException {
+        synchronized (holds) {
+            if (holdTimer != null) {
+                holdTimer.stop();
+                holdTimer = null;
+            }
+            if (overdueScheduler != null) {
+                overdueScheduler.stop();
+                overdueScheduler = null;
+            }
+        }
+        if (checkpointer != null) {
+            checkpointer.stop();
+            checkpointer = null;
+        }
+        if (journal != null) {
+            // A snapshot would make changes durable that were reported to have failed
+            if (journalFailure == null) {
+                saveSnapshot();
+            }
+            journal.close();
+            journal = null;
+        }
+    }
+
+    // Whether changes are journaled and may still be checkpointed
+    boolean isJournaled() {
+        return journal != null && journalFailure == null;
+    }
+
+    long journalSize() {
+        return journal.size();
+    }
+
+    // Method to write a snapshot and drop the journal segments it covers; may run on any thread while the
+    // controller is in use, one snapshot at a time
+    void checkpoint() throws IOException {
+        synchronized (snapshotLock) {
+            writeSnapshot(captureSnapshot());
+        }
+    }
+
+    // Method to start a new journal segment and freeze the state as of that point. Changes are only held off
+    // while the journal is rotated and the shared read-only lists are taken; nothing is encoded here.
+    private ControllerSnapshot.Capture captureSnapshot() throws IOException {
+        structureLock.writeLock().lock();
+        try {
+            checkUsable();
+            long segment = journal.rotate();
+            capture = ControllerSnapshot.capture(allCarsView.get(), allCustomersView.get(), reservations.all(), ledger,
+                    carId, customerId, reservationId, segment);
+            return capture;
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    // Method to encode a captured snapshot, put it on disk and drop the journal segments it covers
+    private void writeSnapshot(ControllerSnapshot.Capture captured) throws IOException {
+        ControllerSnapshot.Image image;
+        try {
+            image = captured.encode();
+        } finally {
+            capture = null;
+        }
+        image.write(snapshotPath);
+        journal.deleteSegmentsBefore(image.getJournalSegment());
+    }
+
+    // Method to call before changing a car, so a snapshot being encoded still sees it as it was
+    private void preserve(Car car) {
+        ControllerSnapshot.Capture current = capture;
+        if (current != null) {
+            current.preserve(car);
+        }
+    }
+
+    private void preserve(Customer customer) {
+        ControllerSnapshot.Capture current = capture;
+        if (current != null) {
+            current.preserve(customer);
+        }
+    }
+
+    // Method to move the id counters forward to the values stored in a snapshot
+    void restoreIds(int nextCarId, int nextCustomerId, int nextReservationId) {
+        carId = Math.max(carId, nextCarId);
+        customerId = Math.max(customerId, nextCustomerId);
+        reservationId = Math.max(reservationId, nextReservationId);
+    }
+
+    // Method to add a new car to the system, number plates must be unique
     public void addNewCar(String name, String brand, String numberPlate, int rentPricePerDay, int costPrice, String color) {
-        Car car = new Car(carId++, name, brand, numberPlate, rentPricePerDay, costPrice, color);
+        requireValue(name, "name");
+        requireValue(brand, "brand");
+        requireValue(numberPlate, "license plate");
+        requireValue(color, "color");
+        write(() -> {
+            if (carsByPlate.containsKey(numberPlate)) {
+                throw new IllegalArgumentException("Car with license plate " + numberPlate + " already exists");
+            }
+            Car car = new Car(carId, name, brand, numberPlate, rentPricePerDay, costPrice, color);
+            if (journal != null) {
+                journal.carAdded(car);
+            }
+            insertCar(car);
+            return car;
+        });
+    }
+
+    // Method to put a new, available car into the system; also used when replaying the journal
+    void insertCar(Car car) {
+        carId = Math.max(carId, car.getCarId() + 1);
         allCars.add(car);
-        availableCars.add(car);
+        allCarsView.invalidate();
+        counters.carAdded();
+        indexCar(car);
+        addAvailable(car);
+        fire(listener -> listener.carAdded(car));
+    }
+
+    /**
+     * Changes the number plate, color and prices of a car together, under one write lock and with one journal
+     * record, instead of one of each per setter
+     * @param licensePlateNumber
+     * @param newNumberPlate must not belong to another car
+     * @param color
+     * @param rentPricePerDay
+     * @param costPrice
+     */
+    public void modifyCar(String licensePlateNumber, String newNumberPlate, String color, int rentPricePerDay, int costPrice) {
+        requireValue(licensePlateNumber, "license plate");
+        requireValue(newNumberPlate, "license plate");
+        requireValue(color, "color");
+        write(() -> {
+            Car car = carsByPlate.get(licensePlateNumber);
+            if (car == null) {
+                throw new IllegalArgumentException("Car with license plate " + licensePlateNumber + " not found");
+            }
+            Car owner = carsByPlate.get(newNumberPlate);
+            if (owner != null && owner != car) {
+                throw new IllegalArgumentException("Car with license plate " + newNumberPlate + " already exists");
+            }
+            if (journal != null) {
+                journal.carModified(car, newNumberPlate, color, rentPricePerDay, costPrice);
+            }
+            applyCarModification(car, newNumberPlate, color, rentPricePerDay, costPrice);
+            return car;
+        });
+    }
+
+    // Method to set the fields changed by modifyCar and keep the indexes in step; also used when replaying the journal
+    void applyCarModification(Car car, String numberPlate, String color, int rentPricePerDay, int costPrice) {
+        preserve(car);
+        boolean available = availableCars.contains(car);
+        carsByPlate.remove(car.getNumberPlate());
+        carsByRentPrice.remove(car.getRentPricePerDay(), car);
+        carsByCostPrice.remove(car.getCostPrice(), car);
+        if (available) {
+            availableIndex(availableByBrand, car.getBrand()).remove(car.getRentPricePerDay(), car);
+            availableIndex(availableByColor, car.getColor()).remove(car.getRentPricePerDay(), car);
+        }
+        // The indexes are updated here in one go, so the setters must not call back into the index updater
+        car.setListener(null);
+        car.setNumberPlate(numberPlate);
+        car.setColor(color);
+        car.setRentPricePerDay(rentPricePerDay);
+        car.setCostPrice(costPrice);
+        car.setListener(carIndexUpdater);
+        carsByPlate.put(numberPlate, car);
+        carsByRentPrice.add(rentPricePerDay, car);
+        carsByCostPrice.add(costPrice, car);
+        if (available) {
+            availableIndex(availableByBrand, car.getBrand()).add(rentPricePerDay, car);
+            availableIndex(availableByColor, color).add(rentPricePerDay, car);
+        }
+        fire(listener -> listener.carUpdated(car));
+    }
+
+    // Method to register a listener for change events
+    public void addControllerListener(ControllerListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeControllerListener(ControllerListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Method to mark a car as available, keeping the available-car price indexes in step
+    private void addAvailable(Car car) {
+        if (availableCars.add(car)) {
+            counters.available(car.getBrand(), car.getName(), 1);
+        }
+        availableCarsView.invalidate();
+        availableIndex(availableByBrand, car.getBrand()).add(car.getRentPricePerDay(), car);
+        availableIndex(availableByColor, car.getColor()).add(car.getRentPricePerDay(), car);
+    }
+
+    // Method to take a car out of the available cars, returns false if it was not available
+    private boolean removeAvailable(Car car) {
+        if (!availableCars.remove(car)) {
+            return false;
+        }
+        counters.available(car.getBrand(), car.getName(), -1);
+        availableCarsView.invalidate();
+        availableIndex(availableByBrand, car.getBrand()).remove(car.getRentPricePerDay(), car);
+        availableIndex(availableByColor, car.getColor()).remove(car.getRentPricePerDay(), car);
+        return true;
+    }
+
+    private static PriceIndex availableIndex(Map<String, PriceIndex> indexes, String value) {
+        return indexes.computeIfAbsent(TextIndex.normalize(value), key -> new PriceIndex());
     }
 
-    // Method to add a new customer to the system
+    // Method to add a car to the lookup indexes and start following changes made on it
+    private void indexCar(Car car) {
+        carsByPlate.put(car.getNumberPlate(), car);
+        carsById.put(car.getCarId(), car);
+        carsByName.add(car.getName(), car);
+        carsByBrand.add(car.getBrand(), car);
+        carsByRentPrice.add(car.getRentPricePerDay(), car);
+        carsByCostPrice.add(car.getCostPrice(), car);
+        car.setListener(carIndexUpdater);
+    }
+
+    // Method to drop a car from the lookup indexes once it leaves the system
+    private void unindexCar(Car car) {
+        // A car outside the system is no longer followed, so a snapshot being encoded keeps it as it is now
+        preserve(car);
+        carsByPlate.remove(car.getNumberPlate());
+        carsById.remove(car.getCarId());
+        carsByName.remove(car.getName(), car);
+        carsByBrand.remove(car.getBrand(), car);
+        carsByRentPrice.remove(car.getRentPricePerDay(), car);
+        carsByCostPrice.remove(car.getCostPrice(), car);
+        car.setListener(null);
+    }
+
+    // Method to add a new customer to the system, license and national ID numbers must be unique
     public void addNewCustomer(String name, int age, String licenseNumber, String nationalIDNumber) {
-        Customer customer = new Customer(customerId++, name, age, licenseNumber, nationalIDNumber);
+        requireValue(name, "name");
+        requireValue(licenseNumber, "license number");
+        requireValue(nationalIDNumber, "national ID number");
+        write(() -> {
+            if (customersByLicense.containsKey(licenseNumber)) {
+                throw new IllegalArgumentException("Customer with license " + licenseNumber + " already exists");
+            }
+            if (customersByNationalID.containsKey(nationalIDNumber)) {
+                throw new IllegalArgumentException("Customer with national ID " + nationalIDNumber + " already exists");
+            }
+            Customer customer = new Customer(customerId, name, age, licenseNumber, nationalIDNumber);
+            if (journal != null) {
+                journal.customerAdded(customer);
+            }
+            insertCustomer(customer);
+            return customer;
+        });
+    }
+
+    // Method to apply several changes as one unit: under the write lock, journaled with a single write. If that
+    // write fails the changes stay applied, so the controller refuses every later operation.
+    void applyBatch(Runnable changes) {
+        write(() -> {
+            if (journal == null) {
+                changes.run();
+                return null;
+            }
+            journal.beginBatch();
+            try {
+                changes.run();
+            } finally {
+                try {
+                    journal.commitBatch();
+                } catch (RuntimeException e) {
+                    // The batch cannot be taken back out of memory
+                    journalFailure = e;
+                    throw e;
+                }
+            }
+            return null;
+        });
+    }
+
+    // Method to run several reads that must all see the same state
+    <T> T readTogether(Supplier<T> reads) {
+        return read(reads);
+    }
+
+    // Method to run an operation while no structural change is in progress
+    private <T> T read(Supplier<T> operation) {
+        structureLock.readLock().lock();
+        try {
+            checkUsable();
+            return operation.get();
+        } finally {
+            structureLock.readLock().unlock();
+            deliverEvents();
+        }
+    }
+
+    // Method to run a structural change with every other operation held off
+    private <T> T write(Supplier<T> operation) {
+        structureLock.writeLock().lock();
+        try {
+            checkUsable();
+            return operation.get();
+        } finally {
+            structureLock.writeLock().unlock();
+            deliverEvents();
+        }
+    }
+
+    // Method to refuse an operation once a batch could not be journaled, see applyBatch
+    private void checkUsable() {
+        RuntimeException failure = journalFailure;
+        if (failure != null) {
+            throw new IllegalStateException("Controller stopped after a failed journal write", failure);
+        }
+    }
+
+    // Method to tell the listeners about a change once this thread holds none of the controller's locks, so a
+    // listener may change cars and customers itself (which takes the write lock) without deadlocking
+    private void fire(Consumer<ControllerListener> event) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        pendingEvents.get().add(event);
+        deliverEvents();
+    }
+
+    // Method to deliver the events raised on this thread, in order, unless it still holds the structure lock
+    private void deliverEvents() {
+        if (structureLock.getReadHoldCount() > 0 || structureLock.isWriteLockedByCurrentThread()) {
+            return;
+        }
+        Deque<Consumer<ControllerListener>> events = pendingEvents.get();
+        Consumer<ControllerListener> event;
+        // A listener may raise more events, which are delivered after the ones before them
+        while ((event = events.poll()) != null) {
+            for (ControllerListener listener : listeners) {
+                event.accept(listener);
+            }
+        }
+    }
+
+    // Method to put a new customer into the system; also used when replaying the journal
+    void insertCustomer(Customer customer) {
+        customerId = Math.max(customerId, customer.getCustomerId() + 1);
         allCustomers.add(customer);
+        allCustomersView.invalidate();
+        indexCustomer(customer);
+        fire(listener -> listener.customerAdded(customer));
+    }
+
+    // Method to add a customer to the lookup indexes and start following changes made on it
+    private void indexCustomer(Customer customer) {
+        customersByLicense.put(customer.getLicenseNumber(), customer);
+        customersByNationalID.put(customer.getNationalIDNumber(), customer);
+        customersById.put(customer.getCustomerId(), customer);
+        customer.setListener(customerIndexUpdater);
+    }
+
+    // Method to drop a customer from the lookup indexes once it leaves the system
+    private void unindexCustomer(Customer customer) {
+        preserve(customer);
+        customersByLicense.remove(customer.getLicenseNumber());
+        customersByNationalID.remove(customer.getNationalIDNumber());
+        customersById.remove(customer.getCustomerId());
+        customer.setListener(null);
     }
 
     // Method to find a particular car using it's license plate number, hence checking if it exists or not
     public Car findCar(String licensePlateNumber){
-        Car car = null;
-        for(Car carX: allCars) {
-            if(carX.getNumberPlate().equals(licensePlateNumber)) {
-                car = carX;
-                break;
-            }
-        }
-        return car;
+        return read(() -> carsByPlate.get(licensePlateNumber));
+    }
+
+    // Method to find a car by its id
+    public Car findCarById(int carId) {
+        return read(() -> carsById.get(carId));
+    }
+
+    // Method to find a customer by its id
+    public Customer findCustomerById(int customerId) {
+        return read(() -> customersById.get(customerId));
+    }
+
+    // Method to find a reservation by its id, returns null if there is none
+    public Reservation findReservationById(int reservationId) {
+        return reservations.get(reservationId);
     }
 
     // Method to get cars by name
@@ -62,12 +596,10 @@ public class Controller implements Serializable {
         System.out.print("Enter name: ");
         Scanner scan = new Scanner(System.in);
         name = scan.nextLine();
-        for(Car car: allCars) {
-            if(car.getName().equals(name)) {
-                test = true;
-                count++;
-                System.out.println(car);
-            }
+        for(Car car: getCarsByName(name)) {
+            test = true;
+            count++;
+            System.out.println(car);
         }
         if(!test) {
             System.out.println("Sorry no car available with name: " + name);
@@ -83,12 +615,10 @@ public class Controller implements Serializable {
         System.out.print("Enter brand: ");
         Scanner scan = new Scanner(System.in);
         brand = scan.nextLine();
-        for(Car car: allCars) {
-            if(car.getBrand().equals(brand)) {
-                test = true;
-                count++;
-                System.out.println(car);
-            }
+        for(Car car: getCarsByBrand(brand)) {
+            test = true;
+            count++;
+            System.out.println(car);
         }
         if(!test) {
             System.out.println("Sorry no car available with brand: " + brand);
@@ -99,36 +629,29 @@ public class Controller implements Serializable {
 
     // Method to find a particular customer using the customer's license number, hence checking if the customer exists or not
     public Customer findCustomer(String licenseNumber, String nationalID){
-        Customer customer = null;
-        for(Customer customerX: allCustomers) {
-            if(customerX.getLicenseNumber().equals(licenseNumber) || customerX.getNationalIDNumber().equals(nationalID)) {
-                customer = customerX;
-                break;
+        return read(() -> {
+            Customer customer = customersByLicense.get(licenseNumber);
+            if (customer == null) {
+                customer = customersByNationalID.get(nationalID);
             }
-        }
-        return customer;
+            return customer;
+        });
     }
 
     // Method to return a particular customer - Overloading
     public  Customer findCustomer(String licenseNumber) {
-        Customer customer = null;
-        for(Customer customerX: allCustomers) {
-            if(customerX.getLicenseNumber().equals(licenseNumber)) {
-                customer = customerX;
-                break;
-            }
-        }
-        return customer;
+        return read(() -> customersByLicense.get(licenseNumber));
     }
 
     // Method to check if there are any cars within the system or available for rent based on the parameter it receives
-    private void check(List<Car> availableCars) {
+    private void check(Collection<Car> availableCars) {
         if (availableCars.size() == 0) {
             System.out.println("There are no cars/No cars available");
             return;
         }
-        for(int i = 1; i <= availableCars.size(); i++) {
-            System.out.println(i + ". " + availableCars.get(i-1));
+        int i = 1;
+        for(Car car: availableCars) {
+            System.out.println(i++ + ". " + car);
         }
     }
 
@@ -139,52 +662,165 @@ public class Controller implements Serializable {
 
     // Method to display all the cars within the system
     public void displayTotalCars() {
-        check(allCars);
+        check(getAllCars());
     }
 
-    // GUI-friendly methods that return data instead of printing
+    // GUI-friendly methods that return data instead of printing.
+    // The lists are read-only snapshots shared by all callers until the next change, so they must not be modified.
     public List<Car> getAllCars() {
-        return new ArrayList<>(allCars);
+        return read(allCarsView::get);
     }
 
     public List<Car> getAvailableCars() {
-        return new ArrayList<>(availableCars);
+        return availableCarsView.get();
     }
 
     public List<Customer> getAllCustomers() {
-        return new ArrayList<>(allCustomers);
+        return read(allCustomersView::get);
     }
 
     public List<Car> getRentedCars() {
-        return new ArrayList<>(rentedCars);
+        return rentedCarsView.get();
+    }
+
+    // Rental status of a single car, answered from the status sets in O(1)
+    public CarStatus getCarStatus(Car car) {
+        if (rentedCars.contains(car)) {
+            return overdueCars.contains(car) ? CarStatus.OVERDUE : CarStatus.RENTED;
+        }
+        return holds.containsKey(car) ? CarStatus.HELD : CarStatus.AVAILABLE;
     }
 
     public List<Car> getCarsByName(String name) {
+        return getCarsByName(name, false);
+    }
+
+    // Cars by name, optionally ignoring case and spacing differences
+    public List<Car> getCarsByName(String name, boolean ignoreCase) {
+        return lookup(carsByName, name, ignoreCase, Car::getNameCode);
+    }
+
+    public List<Car> getCarsByBrand(String brand) {
+        return getCarsByBrand(brand, false);
+    }
+
+    // Cars by brand, optionally ignoring case and spacing differences
+    public List<Car> getCarsByBrand(String brand, boolean ignoreCase) {
+        return lookup(carsByBrand, brand, ignoreCase, Car::getBrandCode);
+    }
+
+    // Method to read the matching bucket of a text index, keeping only exact matches unless case is ignored.
+    // Exact matches compare dictionary codes; a value that was never interned matches no car.
+    private List<Car> lookup(TextIndex index, String value, boolean ignoreCase, ToIntFunction<Car> attribute) {
+        int code = AttributeDictionary.shared().find(value);
+        return read(() -> {
+            List<Car> result = new ArrayList<>();
+            for(Car car: index.get(value)) {
+                if(ignoreCase || attribute.applyAsInt(car) == code) {
+                    result.add(car);
+                }
+            }
+            return result;
+        });
+    }
+
+    // Cars whose rent price per day lies between minPrice and maxPrice (both included), cheapest first.
+    // Brand and color are optional filters matched ignoring case; pass null or an empty string to skip them.
+    public List<Car> getCarsByRentPrice(int minPrice, int maxPrice, boolean availableOnly, String brand, String color) {
+        return filterByPrice(carsByRentPrice, minPrice, maxPrice, availableOnly, brand, color);
+    }
+
+    // Cars whose cost price lies between minPrice and maxPrice (both included), cheapest first
+    public List<Car> getCarsByCostPrice(int minPrice, int maxPrice, boolean availableOnly, String brand, String color) {
+        return filterByPrice(carsByCostPrice, minPrice, maxPrice, availableOnly, brand, color);
+    }
+
+    // Method to check a car's brand or color code against a filter; NO_CODE, for a car without one, matches none
+    private static boolean hasCode(BitSet codes, int code) {
+        return code != AttributeDictionary.NO_CODE && codes.get(code);
+    }
+
+    // Method to walk the price buckets of a range and keep the cars matching the optional filters
+    private List<Car> filterByPrice(PriceIndex index, int minPrice, int maxPrice, boolean availableOnly, String brand, String color) {
         List<Car> result = new ArrayList<>();
-        for(Car car: allCars) {
-            if(car.getName().equals(name)) {
-                result.add(car);
+        if (minPrice > maxPrice) {
+            return result;
+        }
+        boolean anyBrand = brand == null || brand.isEmpty();
+        boolean anyColor = color == null || color.isEmpty();
+        // The few dictionary values equal to the filters ignoring case, so each car costs a bit lookup
+        BitSet brandCodes = anyBrand ? null : AttributeDictionary.shared().findAll(brand::equalsIgnoreCase);
+        BitSet colorCodes = anyColor ? null : AttributeDictionary.shared().findAll(color::equalsIgnoreCase);
+        return read(() -> {
+            for (Set<Car> bucket : index.range(minPrice, maxPrice)) {
+                for (Car car : bucket) {
+                    if ((!availableOnly || availableCars.contains(car))
+                            && (anyBrand || hasCode(brandCodes, car.getBrandCode()))
+                            && (anyColor || hasCode(colorCodes, car.getColorCode()))) {
+                        result.add(car);
+                    }
+                }
             }
+            return result;
+        });
+    }
+
+    // Up to k available cars of the same brand or the same color as the given car, closest in rent price first
+    public List<Car> findAlternatives(String licensePlateNumber, int k) {
+        Car car = findCar(licensePlateNumber);
+        if (car == null || k <= 0) {
+            return new ArrayList<>();
         }
-        return result;
+        return findAlternatives(car.getBrand(), car.getColor(), car.getRentPricePerDay(), k);
     }
 
-    public List<Car> getCarsByBrand(String brand) {
+    // Up to k available cars matching the brand or the color, closest to the given rent price first.
+    // Each index yields its k nearest cars in O(log n + k), and the two sorted lists are merged.
+    public List<Car> findAlternatives(String brand, String color, int rentPricePerDay, int k) {
         List<Car> result = new ArrayList<>();
-        for(Car car: allCars) {
-            if(car.getBrand().equals(brand)) {
-                result.add(car);
+        if (k <= 0) {
+            return result;
+        }
+        PriceIndex brandIndex = availableByBrand.get(TextIndex.normalize(brand));
+        PriceIndex colorIndex = availableByColor.get(TextIndex.normalize(color));
+        List<Car> byBrand = brandIndex == null ? new ArrayList<>() : brandIndex.nearest(rentPricePerDay, k);
+        List<Car> byColor = colorIndex == null ? new ArrayList<>() : colorIndex.nearest(rentPricePerDay, k);
+        Set<Car> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        int i = 0, j = 0;
+        while (result.size() < k && (i < byBrand.size() || j < byColor.size())) {
+            Car next;
+            if (j >= byColor.size() || (i < byBrand.size()
+                    && distance(byBrand.get(i), rentPricePerDay) <= distance(byColor.get(j), rentPricePerDay))) {
+                next = byBrand.get(i++);
+            } else {
+                next = byColor.get(j++);
+            }
+            if (seen.add(next)) {
+                result.add(next);
             }
         }
         return result;
     }
 
+    private static long distance(Car car, int rentPricePerDay) {
+        return Math.abs((long) car.getRentPricePerDay() - rentPricePerDay);
+    }
+
+    // Copy of the cars a customer rents, which does not change with later rentals and returns
     public List<Car> getCustomerRentDetails(String licenseNumber) {
         Customer customer = findCustomer(licenseNumber);
-        if(customer == null || customer.getCarsRented().size() == 0) {
+        if(customer == null) {
             return new ArrayList<>();
         }
-        return new ArrayList<>(customer.getCarsRented());
+        return read(() -> {
+            Lock customerLock = customerLocks.get(customer.getCustomerId());
+            customerLock.lock();
+            try {
+                return new ArrayList<>(customer.getCarsRented());
+            } finally {
+                customerLock.unlock();
+            }
+        });
     }
 
     public String getRentDetailsAsString(String licensePlateNumber) {
@@ -192,36 +828,50 @@ public class Controller implements Serializable {
         if(car == null) {
             return "Sorry no car with license plate number: " + licensePlateNumber;
         } else {
-            if(rentedCars.contains(car)) {
-                return "Car is rented. Customer: " + car.getCurrentUser().getName() + 
-                       ", Days: " + car.getNumberOfDays() + 
-                       ", Total Price: " + car.getTotalRentPrice();
-            } else {
-                return "Car is available, not yet given out for rent";
-            }
+            // The renter is read once under the car's lock, as the car may be released at the same time
+            return read(() -> {
+                Lock carLock = carLocks.get(car.getCarId());
+                carLock.lock();
+                try {
+                    Customer renter = car.getCurrentUser();
+                    if (renter == null) {
+                        return "Car is available, not yet given out for rent";
+                    }
+                    return "Car is rented. Customer: " + renter.getName() +
+                           ", Days: " + car.getNumberOfDays() +
+                           ", Total Price: " + car.getTotalRentPrice();
+                } finally {
+                    carLock.unlock();
+                }
+            });
         }
     }
 
     public String removeCarWithMessage(String licensePlateNumber) {
-        Car toBeRemoved = findCar(licensePlateNumber);
-        if (toBeRemoved == null) {
-            return "Sorry no car available with license number: " + licensePlateNumber;
-        } else if(rentedCars.contains(toBeRemoved)) {
-            return "Sorry can not delete a rented car... Try clearing the customer's rent first";
-        } else {
-            allCars.remove(toBeRemoved);
-            availableCars.remove(toBeRemoved);
-            return "CAR DETAILS: " + toBeRemoved + " SUCCESSFULLY REMOVED";
-        }
+        return write(() -> {
+            Car toBeRemoved = findCar(licensePlateNumber);
+            if (toBeRemoved == null) {
+                return "Sorry no car available with license number: " + licensePlateNumber;
+            } else if(rentedCars.contains(toBeRemoved)) {
+                return "Sorry can not delete a rented car... Try clearing the customer's rent first";
+            } else {
+                deleteCar(toBeRemoved);
+                return "CAR DETAILS: " + toBeRemoved + " SUCCESSFULLY REMOVED";
+            }
+        });
     }
 
     public String removeCustomerWithMessage(String licenseNumber) {
-        Customer toBeRemoved = findCustomer(licenseNumber);
-        if (toBeRemoved == null) {
-            return "Sorry no customer available with license number: " + licenseNumber;
-        }
-        allCustomers.remove(toBeRemoved);
-        return "CUSTOMER DETAILS: " + toBeRemoved + " SUCCESSFULLY REMOVED";
+        return write(() -> {
+            Customer toBeRemoved = findCustomer(licenseNumber);
+            if (toBeRemoved == null) {
+                return "Sorry no customer available with license number: " + licenseNumber;
+            } else if (!toBeRemoved.getCarsRented().isEmpty()) {
+                return "Sorry can not delete a customer who is renting cars... Try clearing the customer's rent first";
+            }
+            deleteCustomer(toBeRemoved);
+            return "CUSTOMER DETAILS: " + toBeRemoved + " SUCCESSFULLY REMOVED";
+        });
     }
 
     public String showCarDetails(String licensePlateNumber) {
@@ -241,50 +891,358 @@ public class Controller implements Serializable {
     }
 
     public String rentCar(String customerLicenseNumber, String carLicensePlateNumber, int numberOfDays) {
-        if(!checkIfCustomer(customerLicenseNumber)) {
-            return "Sorry, customer not found.";
+        return read(() -> {
+            Customer customer = findCustomer(customerLicenseNumber);
+            if(customer == null) {
+                return "Sorry, customer not found.";
+            }
+            Car car = findCar(carLicensePlateNumber);
+            if(car == null) {
+                return "Car not found.";
+            }
+            if(!tryStartRental(customer, car, numberOfDays)) {
+                return "Car is not available for rent.";
+            }
+            return "Successfully rented car. Total price: " + car.getTotalRentPrice();
+        });
+    }
+
+    /**
+     * Rents several cars to one customer at once. Either every car is rented, in a single journal entry,
+     * or none is and the results tell which plates were the problem.
+     * @param customerLicenseNumber
+     * @param licensePlateNumbers
+     * @param numberOfDays
+     * @return one result per plate, in the order given
+     */
+    public List<RentalResult> rentCars(String customerLicenseNumber, List<String> licensePlateNumbers, int numberOfDays) {
+        return read(() -> {
+            List<RentalResult> results = new ArrayList<>(licensePlateNumbers.size());
+            Customer customer = findCustomer(customerLicenseNumber);
+            if (customer == null) {
+                for (String plate : licensePlateNumbers) {
+                    results.add(new RentalResult(plate, RentalResult.Status.CUSTOMER_NOT_FOUND, null));
+                }
+                return results;
+            }
+            // Plates cannot change while the read lock is held, so the lookups stay valid inside the critical section
+            List<Car> found = new ArrayList<>(licensePlateNumbers.size());
+            Set<Car> cars = new LinkedHashSet<>();
+            boolean valid = true;
+            for (String plate : licensePlateNumbers) {
+                Car car = findCar(plate);
+                found.add(car);
+                if (car == null || !cars.add(car)) {
+                    valid = false;
+                }
+            }
+            List<Lock> locks = new ArrayList<>(carLocks.getAll(cars.stream().mapToInt(Car::getCarId).toArray()));
+            locks.add(customerLocks.get(customer.getCustomerId()));
+            for (Lock lock : locks) {
+                lock.lock();
+            }
+            try {
+                Date dateOfRent = new Date();
+                Set<Car> seen = new HashSet<>();
+                for (int i = 0; i < licensePlateNumbers.size(); i++) {
+                    String plate = licensePlateNumbers.get(i);
+                    Car car = found.get(i);
+                    RentalResult.Status status;
+                    if (car == null) {
+                        status = RentalResult.Status.CAR_NOT_FOUND;
+                    } else if (!seen.add(car)) {
+                        status = RentalResult.Status.DUPLICATE;
+                    } else if (!isRentableBy(car, customer, dateOfRent, numberOfDays)) {
+                        status = RentalResult.Status.NOT_AVAILABLE;
+                        valid = false;
+                    } else {
+                        status = RentalResult.Status.RENTED;
+                    }
+                    results.add(new RentalResult(plate, status, car));
+                }
+                if (!valid) {
+                    for (int i = 0; i < results.size(); i++) {
+                        RentalResult result = results.get(i);
+                        if (result.isRented()) {
+                            results.set(i, new RentalResult(result.getNumberPlate(), RentalResult.Status.NOT_RENTED, result.getCar()));
+                        }
+                    }
+                    return results;
+                }
+                List<Car> rented = new ArrayList<>(cars);
+                if (journal != null) {
+                    journal.carsRented(rented, customer, dateOfRent, numberOfDays);
+                }
+                for (Car car : rented) {
+                    applyRental(customer, car, numberOfDays, dateOfRent);
+                }
+                return results;
+            } finally {
+                for (int i = locks.size() - 1; i >= 0; i--) {
+                    locks.get(i).unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Holds an available car for a customer, e.g. while the rent dialog is being filled in. A held car is not
+     * available to anyone else; renting it as that customer converts the hold, otherwise it becomes available
+     * again once the time is up. Holds are not journaled, so they do not survive a restart.
+     * @param customerLicenseNumber
+     * @param licensePlateNumber
+     * @param ttl
+     * @param unit
+     * @return
+     */
+    public String holdCar(String customerLicenseNumber, String licensePlateNumber, long ttl, TimeUnit unit) {
+        return read(() -> {
+            Customer customer = findCustomer(customerLicenseNumber);
+            if(customer == null) {
+                return "Sorry, customer not found.";
+            }
+            Car car = findCar(licensePlateNumber);
+            if(car == null) {
+                return "Car not found.";
+            }
+            Lock carLock = carLocks.get(car.getCarId());
+            carLock.lock();
+            try {
+                Hold current = holds.get(car);
+                boolean extending = current != null && current.getCustomer() == customer;
+                if (!extending && !removeAvailable(car)) {
+                    return "Car is not available for rent.";
+                }
+                // Holding again extends the hold; the old deadline is ignored once it comes up
+                Hold hold = new Hold(car, customer, ttl, unit);
+                holds.put(car, hold);
+                holdTimer().schedule(hold);
+                if (!extending) {
+                    fire(listener -> listener.carHeld(car));
+                }
+                return "Car is held for " + ttl + " " + unit.toString().toLowerCase();
+            } finally {
+                carLock.unlock();
+            }
+        });
+    }
+
+    // Method to give a held car back before its hold runs out, returns false if the car was not held
+    public boolean releaseHold(String licensePlateNumber) {
+        return read(() -> {
+            Car car = findCar(licensePlateNumber);
+            Hold hold = car == null ? null : holds.get(car);
+            return hold != null && endHold(hold);
+        });
+    }
+
+    // Method to tell the listeners that a background task failed, or the thread's uncaught exception handler if there are none
+    void reportFailure(String task, Exception error) {
+        if (listeners.isEmpty()) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+            return;
         }
-        Car car = findCar(carLicensePlateNumber);
-        if(car == null) {
-            return "Car not found.";
+        for (ControllerListener listener : listeners) {
+            listener.backgroundTaskFailed(task, error);
         }
-        if(!availableCars.contains(car)) {
-            return "Car is not available for rent.";
+    }
+
+    private DelayScheduler<Hold> holdTimer() {
+        synchronized (holds) {
+            if (holdTimer == null) {
+                holdTimer = new DelayScheduler<>("Hold expiry", hold -> read(() -> endHold(hold)),
+                        e -> reportFailure("Hold expiry", e));
+            }
+            return holdTimer;
         }
-        Customer customer = findCustomer(customerLicenseNumber);
-        bindCarToCustomer(customer, car);
-        Date date = new Date();
-        car.setDateOfRent(date);
-        car.setNumberOfDays(numberOfDays);
-        car.setTotalRentPrice();
-        return "Successfully rented car. Total price: " + car.getTotalRentPrice();
     }
 
-    public String releaseCarWithMessage(String licensePlateNumber) {
+    // Method to make a held car available again, unless that hold was replaced or converted meanwhile; needs the read lock
+    private boolean endHold(Hold hold) {
+        Car car = hold.getCar();
+        Lock carLock = carLocks.get(car.getCarId());
+        carLock.lock();
+        try {
+            if (!holds.remove(car, hold)) {
+                return false;
+            }
+            addAvailable(car);
+            fire(listener -> listener.carHoldEnded(car));
+            return true;
+        } finally {
+            carLock.unlock();
+        }
+    }
+
+    // A car can be rented by a customer if it is available, or held for that same customer, and nobody else
+    // has reserved it for any of the rental days
+    private boolean isRentableBy(Car car, Customer customer, Date dateOfRent, int numberOfDays) {
+        Hold hold = holds.get(car);
+        if (!availableCars.contains(car) && (hold == null || hold.getCustomer() != customer)) {
+            return false;
+        }
+        long from = dateOfRent.getTime();
+        for (Reservation reservation : reservations.overlapping(car, from, from + TimeUnit.DAYS.toMillis(numberOfDays))) {
+            if (reservation.getCustomer() != customer) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Books a car for a customer over a future date range, if the car is neither reserved nor out on rent then
+     * @param customerLicenseNumber
+     * @param licensePlateNumber
+     * @param from first moment of the booking
+     * @param to moment the car is free again
+     * @return
+     */
+    public String reserveCar(String customerLicenseNumber, String licensePlateNumber, Date from, Date to) {
+        if (!from.before(to)) {
+            return "The reservation must end after it starts.";
+        }
+        return read(() -> {
+            Customer customer = findCustomer(customerLicenseNumber);
+            if(customer == null) {
+                return "Sorry, customer not found.";
+            }
+            Car car = findCar(licensePlateNumber);
+            if(car == null) {
+                return "Car not found.";
+            }
+            Lock carLock = carLocks.get(car.getCarId());
+            carLock.lock();
+            try {
+                if (!isFree(car, from.getTime(), to.getTime())) {
+                    return "Car is already booked during that time.";
+                }
+                Reservation reservation;
+                synchronized (reservations) {
+                    reservation = new Reservation(reservationId, car, customer, from, to);
+                    if (journal != null) {
+                        journal.reservationAdded(reservation);
+                    }
+                    insertReservation(reservation);
+                }
+                return "Successfully reserved car. Reservation number: " + reservation.getReservationId();
+            } finally {
+                carLock.unlock();
+            }
+        });
+    }
+
+    // Method to cancel a reservation, returns false if there is no reservation with that number
+    public boolean cancelReservation(int reservationId) {
+        return read(() -> {
+            Reservation reservation = reservations.get(reservationId);
+            if (reservation == null) {
+                return false;
+            }
+            Lock carLock = carLocks.get(reservation.getCar().getCarId());
+            carLock.lock();
+            try {
+                return deleteReservation(reservation);
+            } finally {
+                carLock.unlock();
+            }
+        });
+    }
+
+    // Method to check if a car is neither reserved nor expected back from a rental during [from, to)
+    public boolean isCarFree(String licensePlateNumber, Date from, Date to) {
+        return read(() -> {
+            Car car = findCar(licensePlateNumber);
+            return car != null && isFree(car, from.getTime(), to.getTime());
+        });
+    }
+
+    /**
+     * Finds the cars that are free over a whole date range. The cars reserved or rented during the range come
+     * from the interval indexes in O(log n + k), plus the overdue cars for a range that starts before now, so
+     * neither the calendars nor the rentals of the free cars are looked at; only the answer costs O(n).
+     * @param from
+     * @param to
+     * @return
+     */
+    public List<Car> findCarsFreeBetween(Date from, Date to) {
+        return read(() -> {
+            Set<Integer> busy = reservations.busyCarIds(from.getTime(), to.getTime());
+            if (from.getTime() < System.currentTimeMillis()) {
+                for (Car car : overdueCars) {
+                    busy.add(car.getCarId());
+                }
+            }
+            List<Car> free = new ArrayList<>();
+            for (Car car : allCarsView.get()) {
+                if (!busy.contains(car.getCarId())) {
+                    free.add(car);
+                }
+            }
+            return free;
+        });
+    }
+
+    // Method to get the reservations of a car, earliest first
+    public List<Reservation> getReservations(String licensePlateNumber) {
         Car car = findCar(licensePlateNumber);
-        if(car == null) {
-            return "Sorry no car with license plate number: " + licensePlateNumber;
-        } else {
-            if(rentedCars.contains(car)) {
-                rentedCars.remove(car);
-                availableCars.add(car);
-                car.getCurrentUser().getCarsRented().remove(car);
-                car.setCurrentUser(null);
-                return "Successfully cleared rent details for " + car.getName();
-            } else {
-                return "Car is available, not yet given out for rent";
+        return car == null ? new ArrayList<>() : reservations.forCar(car);
+    }
+
+    // A rented car is busy over its planned rental and, once overdue, until it is returned: an overdue car is
+    // never free over a range that starts before now
+    private boolean isFree(Car car, long from, long to) {
+        if (rentedCars.contains(car)) {
+            boolean planned = car.getDateOfRent().getTime() < to && car.getDateOfReturn().getTime() > from;
+            if (planned || overdueCars.contains(car) && from < System.currentTimeMillis()) {
+                return false;
             }
         }
+        return reservations.overlapping(car, from, to).isEmpty();
+    }
+
+    // Method to put a reservation into the calendar; also used when loading a snapshot or replaying the journal
+    void insertReservation(Reservation reservation) {
+        reservationId = Math.max(reservationId, reservation.getReservationId() + 1);
+        reservations.add(reservation);
+    }
+
+    // Method to take a reservation out of the calendar, returns false if it was already gone
+    boolean deleteReservation(Reservation reservation) {
+        if (reservations.get(reservation.getReservationId()) == null) {
+            return false;
+        }
+        if (journal != null) {
+            journal.reservationCancelled(reservation);
+        }
+        return reservations.remove(reservation);
+    }
+
+    public String releaseCarWithMessage(String licensePlateNumber) {
+        return read(() -> {
+            Car car = findCar(licensePlateNumber);
+            if(car == null) {
+                return "Sorry no car with license plate number: " + licensePlateNumber;
+            } else {
+                if(tryEndRental(car)) {
+                    return "Successfully cleared rent details for " + car.getName();
+                } else {
+                    return "Car is available, not yet given out for rent";
+                }
+            }
+        });
     }
 
     // Display all customers
     public void displayCustomers() {
-        if(allCustomers.size() == 0) {
+        List<Customer> customers = getAllCustomers();
+        if(customers.size() == 0) {
             System.out.println("There are no customers");
             return;
         }
-        for(int i = 1; i <= allCustomers.size(); i++) {
-            System.out.println(i + ". " + allCustomers.get(i-1));
+        for(int i = 1; i <= customers.size(); i++) {
+            System.out.println(i + ". " + customers.get(i-1));
         }
     }
 
@@ -314,11 +1272,7 @@ public class Controller implements Serializable {
         if(car == null) {
             System.out.println("Sorry no car with license plate number: " + licensePlateNumber);
         } else {
-            if(rentedCars.contains(car)) {
-                rentedCars.remove(car);
-                availableCars.add(car);
-                car.getCurrentUser().getCarsRented().remove(car);
-                car.setCurrentUser(null);
+            if(read(() -> tryEndRental(car))) {
                 System.out.println("Successfully cleared rent details for " + car);
             } else {
                 System.out.println("Car is available, not yet given out for rent");
@@ -328,11 +1282,49 @@ public class Controller implements Serializable {
 
     // Method to remove a customer from the system
     public Customer removeCustomer(String licenseNumber) {
-        Customer toBeRemoved = findCustomer(licenseNumber);
-        if (toBeRemoved == null)
-            return null;
-        allCustomers.remove(toBeRemoved);
-        return toBeRemoved;
+        return write(() -> {
+            Customer toBeRemoved = findCustomer(licenseNumber);
+            if (toBeRemoved == null)
+                return null;
+            if (!toBeRemoved.getCarsRented().isEmpty()) {
+                System.out.println("Sorry can not delete a customer who is renting cars... Try clearing the customer's rent first - OPTION 12");
+                return null;
+            }
+            deleteCustomer(toBeRemoved);
+            return toBeRemoved;
+        });
+    }
+
+    // Method to take an available car out of the system
+    void deleteCar(Car car) {
+        if (journal != null) {
+            journal.carRemoved(car);
+        }
+        allCars.remove(car);
+        allCarsView.invalidate();
+        counters.carRemoved();
+        removeAvailable(car);
+        holds.remove(car);
+        // Replaying the removal drops the reservations again, so they need no journal records of their own
+        for (Reservation reservation : reservations.forCar(car)) {
+            reservations.remove(reservation);
+        }
+        unindexCar(car);
+        fire(listener -> listener.carRemoved(car));
+    }
+
+    // Method to take a customer out of the system
+    void deleteCustomer(Customer customer) {
+        if (journal != null) {
+            journal.customerRemoved(customer);
+        }
+        allCustomers.remove(customer);
+        allCustomersView.invalidate();
+        for (Reservation reservation : reservations.forCustomer(customer)) {
+            reservations.remove(reservation);
+        }
+        unindexCustomer(customer);
+        fire(listener -> listener.customerRemoved(customer));
     }
 
     // Method to show all rents
@@ -341,26 +1333,40 @@ public class Controller implements Serializable {
             System.out.println("No car rented out yet...");
         else {
             System.out.print("Customer License Number\tCar License Plate Number\tDate Of Rent\tNumber Of Days\tTotal Price To Be Paid");
-            for (Car car: rentedCars){
-                System.out.printf("%s\t %s\t %s\t %s\t %s", car.getCurrentUser().getLicenseNumber(), car.getNumberPlate(), car.getDateOfRent(), car.getNumberOfDays(), car.getTotalRentPrice());
-            }
+            read(() -> {
+                for (Car car: rentedCars){
+                    Lock carLock = carLocks.get(car.getCarId());
+                    carLock.lock();
+                    try {
+                        // Skips a car released since the set was read
+                        Customer renter = car.getCurrentUser();
+                        if (renter != null) {
+                            System.out.printf("%s\t %s\t %s\t %s\t %s", renter.getLicenseNumber(), car.getNumberPlate(), car.getDateOfRent(), car.getNumberOfDays(), car.getTotalRentPrice());
+                        }
+                    } finally {
+                        carLock.unlock();
+                    }
+                }
+                return null;
+            });
         }
     }
 
     // Method to remove a car from the system
     public Car removeCar(String licensePlateNumber) {
-        Car toBeRemoved = findCar(licensePlateNumber);
-        if (toBeRemoved == null)
-            System.out.println("Sorry no car available with license number: " + licensePlateNumber);
-        else if(rentedCars.contains(toBeRemoved))
-            System.out.println("Sorry can not delete a rented car... Try clearing the customers rent first - OPTION 12");
-        else {
-            allCars.remove(toBeRemoved);
-            availableCars.remove(toBeRemoved);
-            System.out.println("CAR DETAILS: " + toBeRemoved + " SUCCESSFULLY REMOVED");
-            return toBeRemoved;
-        }
-        return null;
+        return write(() -> {
+            Car toBeRemoved = findCar(licensePlateNumber);
+            if (toBeRemoved == null)
+                System.out.println("Sorry no car available with license number: " + licensePlateNumber);
+            else if(rentedCars.contains(toBeRemoved))
+                System.out.println("Sorry can not delete a rented car... Try clearing the customers rent first - OPTION 12");
+            else {
+                deleteCar(toBeRemoved);
+                System.out.println("CAR DETAILS: " + toBeRemoved + " SUCCESSFULLY REMOVED");
+                return toBeRemoved;
+            }
+            return null;
+        });
     }
 
     // Method to modify a car's details based upon choice selection
@@ -482,10 +1488,7 @@ public class Controller implements Serializable {
 
     // Method to check if a given license number belongs to a customer within the system
     public boolean checkIfCustomer(String licenseNumber){
-        for(Customer customer: allCustomers) {
-            if (customer.getLicenseNumber().equals(licenseNumber)) return true;
-        }
-        return false;
+        return read(() -> customersByLicense.containsKey(licenseNumber));
     }
 
     // Show a car's details
@@ -496,11 +1499,165 @@ public class Controller implements Serializable {
     }
 
     // Method to bind a car to a customer
-    public void bindCarToCustomer(Customer customer, Car car){
+    private void bindCarToCustomer(Customer customer, Car car){
+        preserve(car);
         customer.getCarsRented().add(car);
         car.setCurrentUser(customer);
         rentedCars.add(car);
-        availableCars.remove(car);
+        rentedCarsView.invalidate();
+        reservations.rentalStarted(car);
+        counters.rented(car.getBrand(), car.getName(), car.getTotalRentPrice(), 1);
+        if (customer.getCarsRented().size() == 1) {
+            counters.customersWithRentals(1);
+        }
+        removeAvailable(car);
+        overdueScheduler().schedule(new Due(car, car.getDateOfReturn().getTime()));
+    }
+
+    // Method to rent a car if it is still available, holding its lock and the customer's; needs the read lock
+    private boolean tryStartRental(Customer customer, Car car, int numberOfDays) {
+        Lock carLock = carLocks.get(car.getCarId());
+        Lock customerLock = customerLocks.get(customer.getCustomerId());
+        carLock.lock();
+        customerLock.lock();
+        try {
+            Date dateOfRent = new Date();
+            if (!isRentableBy(car, customer, dateOfRent, numberOfDays)) {
+                return false;
+            }
+            startRental(customer, car, numberOfDays, dateOfRent);
+            return true;
+        } finally {
+            customerLock.unlock();
+            carLock.unlock();
+        }
+    }
+
+    // Method to release a car if it is rented, holding its lock and its renter's; needs the read lock
+    private boolean tryEndRental(Car car) {
+        Lock carLock = carLocks.get(car.getCarId());
+        carLock.lock();
+        try {
+            Customer renter = car.getCurrentUser();
+            if (renter == null) {
+                return false;
+            }
+            Lock customerLock = customerLocks.get(renter.getCustomerId());
+            customerLock.lock();
+            try {
+                return endRental(car, new Date());
+            } finally {
+                customerLock.unlock();
+            }
+        } finally {
+            carLock.unlock();
+        }
+    }
+
+    // Method to bind an available car to a customer and record the rent details
+
+    void startRental(Customer customer, Car car, int numberOfDays, Date dateOfRent) {
+        if (journal != null) {
+            journal.carRented(car, customer, dateOfRent, numberOfDays);
+        }
+        applyRental(customer, car, numberOfDays, dateOfRent);
+    }
+
+    // Method to put back a rental loaded from a snapshot as it was saved, with the total it was agreed at; its
+    // ledger row comes back with the rest of the ledger
+    void restoreRental(Customer customer, Car car) {
+        bindCarToCustomer(customer, car);
+        fire(listener -> listener.carRented(car));
+    }
+
+    // Method to record a rental that is already journaled
+    private void applyRental(Customer customer, Car car, int numberOfDays, Date dateOfRent) {
+        holds.remove(car);
+        preserve(car);
+        car.setDateOfRent(dateOfRent);
+        car.setNumberOfDays(numberOfDays);
+        car.setDateOfReturn(new Date(dateOfRent.getTime() + TimeUnit.DAYS.toMillis(numberOfDays)));
+        car.setTotalRentPrice();
+        ledger.open(car.getCarId(), customer.getCustomerId(), dateOfRent, numberOfDays, car.getTotalRentPrice());
+        bindCarToCustomer(customer, car);
+        fire(listener -> listener.carRented(car));
+    }
+
+    private DelayScheduler<Due> overdueScheduler() {
+        synchronized (holds) {
+            if (overdueScheduler == null) {
+                overdueScheduler = new DelayScheduler<>("Overdue scheduler", due -> read(() -> markOverdue(due)),
+                        e -> reportFailure("Overdue check", e));
+            }
+            return overdueScheduler;
+        }
+    }
+
+    // Method to flag a rental as overdue once its due date has passed, unless the car was returned meanwhile
+    private boolean markOverdue(Due due) {
+        Car car = due.getCar();
+        Lock carLock = carLocks.get(car.getCarId());
+        carLock.lock();
+        try {
+            if (!rentedCars.contains(car) || car.getDateOfReturn().getTime() != due.getDateOfReturn()
+                    || !overdueCars.add(car)) {
+                return false;
+            }
+            counters.overdue(1);
+            fire(listener -> listener.carOverdue(car));
+            return true;
+        } finally {
+            carLock.unlock();
+        }
+    }
+
+    // Rented cars whose due date has passed, the longest overdue first
+    public List<Car> getOverdueCars() {
+        List<Car> cars = new ArrayList<>(overdueCars);
+        cars.sort(Comparator.comparing(Car::getDateOfReturn));
+        return cars;
+    }
+
+    public boolean isOverdue(Car car) {
+        return overdueCars.contains(car);
+    }
+
+    // Live counts of the fleet, read in O(1) without touching the car or customer lists
+    public FleetCounters getFleetCounters() {
+        return counters;
+    }
+
+    // History of every rental, returned or not; rows are only ever appended
+    public RentalLedger getRentalLedger() {
+        return ledger;
+    }
+
+    // Method to clear the rent of a car, returns false if the car was not rented
+    boolean endRental(Car car, Date dateOfReturn) {
+        if (!rentedCars.contains(car)) {
+            return false;
+        }
+        if (journal != null) {
+            journal.carReleased(car, dateOfReturn);
+        }
+        preserve(car);
+        ledger.close(car.getCarId(), dateOfReturn);
+        rentedCars.remove(car);
+        rentedCarsView.invalidate();
+        reservations.rentalEnded(car);
+        counters.rented(car.getBrand(), car.getName(), car.getTotalRentPrice(), -1);
+        if (overdueCars.remove(car)) {
+            counters.overdue(-1);
+        }
+        addAvailable(car);
+        Customer renter = car.getCurrentUser();
+        renter.getCarsRented().remove(car);
+        if (renter.getCarsRented().isEmpty()) {
+            counters.customersWithRentals(-1);
+        }
+        car.setCurrentUser(null);
+        fire(listener -> listener.carReleased(car));
+        return true;
     }
 
     // Method to rent a car(s) to a customer
@@ -521,70 +1678,253 @@ public class Controller implements Serializable {
             System.out.print("Enter the license plate number of the chosen car: ");
         else
             System.out.println("Enter the license plate number of the chosen cars one after the other below:");
+        List<String> licensePlateNumbers = new ArrayList<>(numberOfCars);
         for (int i = 0; i < numberOfCars; i++) {
-            String licensePlateNumber = sc.nextLine();
-            if (findCar(licensePlateNumber) != null && availableCars.contains(findCar(licensePlateNumber))) {
-                Customer customer = findCustomer(licenseNumber);
-                Car car = findCar(licensePlateNumber);
-                bindCarToCustomer(customer, car);
-                Date date = new Date();
-                car.setDateOfRent(date);
-                car.setNumberOfDays(numberOfDays);
-                car.setTotalRentPrice();
-                System.out.println("Successfully stored rent details.");
-            }else{
-                System.out.println("Car is not available.");
-            }
-        }
-    }
-
-//    public static Controller getController() throws IOException, ClassNotFoundException {
-//        ObjectInputStream objectInputStream;
-//        Controller controller = new Controller();
-//        File file = new File("cars");
-//        if(file.exists() && file.isDirectory()){
-//            File[] cars = file.listFiles();
-//            assert cars != null;
-//            for (File value : cars) {
-//                objectInputStream = new ObjectInputStream(new FileInputStream(value));
-//                Car car = (Car) objectInputStream.readObject();
-//                controller.allCars.add(car);
-//            }
-//            for (Car car: controller.allCars){
-//                if (car.getCurrentUser() == null)
-//                    controller.availableCars.add(car);
-//                else
-//                    controller.rentedCars.add(car);
-//            }
-//        }
-//        file = new File("customers");
-//        if(file.exists() && file.isDirectory()){
-//            File[] customers = file.listFiles();
-//            assert customers != null;
-//            for (File value : customers) {
-//                objectInputStream = new ObjectInputStream(new FileInputStream(value));
-//                Customer customer = (Customer) objectInputStream.readObject();
-//                controller.allCustomers.add(customer);
-//            }
-//        }
-//        return controller;
-//    }
-//    public static void saveController() {
-//        ObjectOutputStream objectOutputStream;
-//        String str;
-//        try{
-//            for (Car car: getController().availableCars){
-//                str = "cars/";
-//                objectOutputStream = new ObjectOutputStream(new FileOutputStream(str + car.getNumberPlate()+ ".txt"));
-//                objectOutputStream.writeObject(car);
-//            }
-//            for (Customer customer: getController().allCustomers){
-//                str = "customers/";
-//                objectOutputStream = new ObjectOutputStream(new FileOutputStream(str + customer.getLicenseNumber()+ ".txt"));
-//                objectOutputStream.writeObject(customer);
-//            }
-//        }catch (Exception exception){
-//            exception.printStackTrace();
-//        }
-//    }
+            licensePlateNumbers.add(sc.nextLine());
+        }
+        List<RentalResult> results = rentCars(licenseNumber, licensePlateNumbers, numberOfDays);
+        if (!results.isEmpty() && results.get(0).isRented()) {
+            System.out.println("Successfully stored rent details.");
+        } else {
+            System.out.println("No car was rented:");
+            for (RentalResult result : results) {
+                System.out.println(result);
+            }
+        }
+    }
+
+    // Method to reject a missing name, brand, color, plate or id number before anything is locked, journaled or indexed
+    private static void requireValue(String value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException("The " + field + " must not be null");
+        }
+    }
+
+    // A change made directly on a car or customer holds the write lock from its "changing" callback until the
+    // matching changed callback, or until the change is rejected
+    private void beginChange(Car car) {
+        lockForChange();
+        preserve(car);
+    }
+
+    private void beginChange(Customer customer) {
+        lockForChange();
+        preserve(customer);
+    }
+
+    private void lockForChange() {
+        structureLock.writeLock().lock();
+        try {
+            checkUsable();
+        } catch (IllegalStateException e) {
+            structureLock.writeLock().unlock();
+            throw e;
+        }
+    }
+
+    private void endChange() {
+        structureLock.writeLock().unlock();
+        deliverEvents();
+    }
+
+    // Keeps the number plate index correct when a plate is changed directly on a car
+    private class CarIndexUpdater implements CarListener {
+        @Override
+        public void numberPlateChanging(Car car, String newNumberPlate) {
+            requireValue(newNumberPlate, "license plate");
+            beginChange(car);
+            try {
+                Car owner = carsByPlate.get(newNumberPlate);
+                if (owner != null && owner != car) {
+                    throw new IllegalArgumentException("Car with license plate " + newNumberPlate + " already exists");
+                }
+                if (journal != null) {
+                    journal.carNumberPlateChanged(car, newNumberPlate);
+                }
+                carsByPlate.remove(car.getNumberPlate());
+                carsByPlate.put(newNumberPlate, car);
+            } catch (RuntimeException e) {
+                endChange();
+                throw e;
+            }
+        }
+
+        @Override
+        public void nameChanging(Car car, String newName) {
+            requireValue(newName, "name");
+            beginChange(car);
+            try {
+                if (journal != null) {
+                    journal.carNameChanged(car, newName);
+                }
+                carsByName.remove(car.getName(), car);
+                carsByName.add(newName, car);
+                counters.nameChanged(car.getName(), newName, availableCars.contains(car), rentedCars.contains(car));
+            } catch (RuntimeException e) {
+                endChange();
+                throw e;
+            }
+        }
+
+        @Override
+        public void brandChanging(Car car, String newBrand) {
+            requireValue(newBrand, "brand");
+            beginChange(car);
+            try {
+                if (journal != null) {
+                    journal.carBrandChanged(car, newBrand);
+                }
+                carsByBrand.remove(car.getBrand(), car);
+                carsByBrand.add(newBrand, car);
+                counters.brandChanged(car.getBrand(), newBrand, availableCars.contains(car), rentedCars.contains(car));
+                if (availableCars.contains(car)) {
+                    availableIndex(availableByBrand, car.getBrand()).remove(car.getRentPricePerDay(), car);
+                    availableIndex(availableByBrand, newBrand).add(car.getRentPricePerDay(), car);
+                }
+            } catch (RuntimeException e) {
+                endChange();
+                throw e;
+            }
+        }
+
+        @Override
+        public void rentPricePerDayChanging(Car car, int newRentPricePerDay) {
+            beginChange(car);
+            try {
+                if (journal != null) {
+                    journal.carRentPricePerDayChanged(car, newRentPricePerDay);
+                }
+                carsByRentPrice.remove(car.getRentPricePerDay(), car);
+                carsByRentPrice.add(newRentPricePerDay, car);
+                if (availableCars.contains(car)) {
+                    PriceIndex brandIndex = availableIndex(availableByBrand, car.getBrand());
+                    PriceIndex colorIndex = availableIndex(availableByColor, car.getColor());
+                    brandIndex.remove(car.getRentPricePerDay(), car);
+                    brandIndex.add(newRentPricePerDay, car);
+                    colorIndex.remove(car.getRentPricePerDay(), car);
+                    colorIndex.add(newRentPricePerDay, car);
+                }
+            } catch (RuntimeException e) {
+                endChange();
+                throw e;
+            }
+        }
+
+        @Override
+        public void costPriceChanging(Car car, int newCostPrice) {
+            beginChange(car);
+            try {
+                if (journal != null) {
+                    journal.carCostPriceChanged(car, newCostPrice);
+                }
+                carsByCostPrice.remove(car.getCostPrice(), car);
+                carsByCostPrice.add(newCostPrice, car);
+            } catch (RuntimeException e) {
+                endChange();
+                throw e;
+            }
+        }
+
+        @Override
+        public void colorChanging(Car car, String newColor) {
+            requireValue(newColor, "color");
+            beginChange(car);
+            try {
+                if (journal != null) {
+                    journal.carColorChanged(car, newColor);
+                }
+                if (availableCars.contains(car)) {
+                    availableIndex(availableByColor, car.getColor()).remove(car.getRentPricePerDay(), car);
+                    availableIndex(availableByColor, newColor).add(car.getRentPricePerDay(), car);
+                }
+            } catch (RuntimeException e) {
+                endChange();
+                throw e;
+            }
+        }
+
+        @Override
+        public void carChanged(Car car) {
+            // Delivered by endChange(), once the write lock is released
+            fire(listener -> listener.carUpdated(car));
+            endChange();
+        }
+    }
+
+    // Keeps the license and national ID indexes correct when they are changed directly on a customer
+    private class CustomerIndexUpdater implements CustomerListener {
+        @Override
+        public void nameChanging(Customer customer, String newName) {
+            requireValue(newName, "name");
+            beginChange(customer);
+            try {
+                if (journal != null) {
+                    journal.customerNameChanged(customer, newName);
+                }
+            } catch (RuntimeException e) {
+                endChange();
+                throw e;
+            }
+        }
+
+        @Override
+        public void ageChanging(Customer customer, int newAge) {
+            beginChange(customer);
+            try {
+                if (journal != null) {
+                    journal.customerAgeChanged(customer, newAge);
+                }
+            } catch (RuntimeException e) {
+                endChange();
+                throw e;
+            }
+        }
+
+        @Override
+        public void licenseNumberChanging(Customer customer, String newLicenseNumber) {
+            requireValue(newLicenseNumber, "license number");
+            beginChange(customer);
+            try {
+                Customer owner = customersByLicense.get(newLicenseNumber);
+                if (owner != null && owner != customer) {
+                    throw new IllegalArgumentException("Customer with license " + newLicenseNumber + " already exists");
+                }
+                if (journal != null) {
+                    journal.customerLicenseNumberChanged(customer, newLicenseNumber);
+                }
+                customersByLicense.remove(customer.getLicenseNumber());
+                customersByLicense.put(newLicenseNumber, customer);
+            } catch (RuntimeException e) {
+                endChange();
+                throw e;
+            }
+        }
+
+        @Override
+        public void nationalIDNumberChanging(Customer customer, String newNationalIDNumber) {
+            requireValue(newNationalIDNumber, "national ID number");
+            beginChange(customer);
+            try {
+                Customer owner = customersByNationalID.get(newNationalIDNumber);
+                if (owner != null && owner != customer) {
+                    throw new IllegalArgumentException("Customer with national ID " + newNationalIDNumber + " already exists");
+                }
+                if (journal != null) {
+                    journal.customerNationalIDNumberChanged(customer, newNationalIDNumber);
+                }
+                customersByNationalID.remove(customer.getNationalIDNumber());
+                customersByNationalID.put(newNationalIDNumber, customer);
+            } catch (RuntimeException e) {
+                endChange();
+                throw e;
+            }
+        }
+
+        @Override
+        public void customerChanged(Customer customer) {
+            // Delivered by endChange(), once the write lock is released
+            fire(listener -> listener.customerUpdated(customer));
+            endChange();
+        }
+    }
 }
@@ -0,0 +1,395 @@
+package main.controller;
+
+import main.model.Car;
+import main.model.Customer;
+import main.model.Reservation;
+import main.persistence.BinaryInput;
+import main.persistence.BinaryOutput;
+import main.persistence.EntityCodec;
+import main.persistence.Journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Turns every Controller mutation into a compact journal record, and replays those records into a Controller
+ * on startup. Records are written before the change is applied, so whatever is in memory is also on disk.
+ *
+ * The journal is split into numbered segment files (journal-00000001.log, ...). A checkpoint rotates to a new
+ * segment, and once the snapshot covering the older segments is on disk they are deleted.
+ */
+
+class ControllerJournal implements Closeable {
+
+    // Record types, one byte at the start of every record
+    private static final byte CAR_ADDED = 1;
+    private static final byte CAR_REMOVED = 2;
+    private static final byte CUSTOMER_ADDED = 3;
+    private static final byte CUSTOMER_REMOVED = 4;
+    private static final byte CAR_RENTED = 5;
+    private static final byte CAR_NAME = 7;
+    private static final byte CAR_BRAND = 8;
+    private static final byte CAR_PLATE = 9;
+    private static final byte CAR_RENT_PRICE = 10;
+    private static final byte CAR_COST_PRICE = 11;
+    private static final byte CAR_COLOR = 12;
+    private static final byte CUSTOMER_NAME = 13;
+    private static final byte CUSTOMER_AGE = 14;
+    private static final byte CUSTOMER_LICENSE = 15;
+    private static final byte CUSTOMER_NATIONAL_ID = 16;
+    private static final byte CARS_RENTED = 17;
+    private static final byte RESERVATION_ADDED = 18;
+    private static final byte RESERVATION_CANCELLED = 19;
+    private static final byte CAR_RETURNED = 20;
+    private static final byte CAR_MODIFIED = 21;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private long segment;
+    private Journal journal;
+    // Records held back until commitBatch(), null when every record is written straight away
+    private List<byte[]> batch;
+
+    /**
+     * Opens a segment of the journal for appending
+     * @param directory
+     * @param segment number of the segment, created when it does not exist yet
+     * @throws IOException
+     */
+    ControllerJournal(Path directory, long segment) throws IOException {
+        this.directory = directory;
+        this.segment = segment;
+        journal = new Journal(segmentPath(directory, segment), true);
+    }
+
+    void carAdded(Car car) {
+        BinaryOutput record = record(CAR_ADDED);
+        EntityCodec.writeCar(record, car);
+        append(record);
+    }
+
+    void carRemoved(Car car) {
+        append(record(CAR_REMOVED).writeVarInt(car.getCarId()));
+    }
+
+    void customerAdded(Customer customer) {
+        BinaryOutput record = record(CUSTOMER_ADDED);
+        EntityCodec.writeCustomer(record, customer);
+        append(record);
+    }
+
+    void customerRemoved(Customer customer) {
+        append(record(CUSTOMER_REMOVED).writeVarInt(customer.getCustomerId()));
+    }
+
+    void carRented(Car car, Customer customer, Date dateOfRent, int numberOfDays) {
+        append(record(CAR_RENTED)
+                .writeVarInt(car.getCarId())
+                .writeVarInt(customer.getCustomerId())
+                .writeVarLong(dateOfRent.getTime())
+                .writeVarInt(numberOfDays));
+    }
+
+    // One record for a whole batch rental, so it is replayed all or nothing
+    void carsRented(List<Car> cars, Customer customer, Date dateOfRent, int numberOfDays) {
+        BinaryOutput record = record(CARS_RENTED)
+                .writeVarInt(customer.getCustomerId())
+                .writeVarLong(dateOfRent.getTime())
+                .writeVarInt(numberOfDays)
+                .writeVarInt(cars.size());
+        for (Car car : cars) {
+            record.writeVarInt(car.getCarId());
+        }
+        append(record);
+    }
+
+    void reservationAdded(Reservation reservation) {
+        BinaryOutput record = record(RESERVATION_ADDED);
+        EntityCodec.writeReservation(record, reservation);
+        append(record);
+    }
+
+    void reservationCancelled(Reservation reservation) {
+        append(record(RESERVATION_CANCELLED).writeVarInt(reservation.getReservationId()));
+    }
+
+    void carReleased(Car car, Date dateOfReturn) {
+        append(record(CAR_RETURNED).writeVarInt(car.getCarId()).writeVarLong(dateOfReturn.getTime()));
+    }
+
+    void carNameChanged(Car car, String name) {
+        append(record(CAR_NAME).writeVarInt(car.getCarId()).writeString(name));
+    }
+
+    void carBrandChanged(Car car, String brand) {
+        append(record(CAR_BRAND).writeVarInt(car.getCarId()).writeString(brand));
+    }
+
+    void carNumberPlateChanged(Car car, String numberPlate) {
+        append(record(CAR_PLATE).writeVarInt(car.getCarId()).writeString(numberPlate));
+    }
+
+    void carRentPricePerDayChanged(Car car, int rentPricePerDay) {
+        append(record(CAR_RENT_PRICE).writeVarInt(car.getCarId()).writeVarInt(rentPricePerDay));
+    }
+
+    void carCostPriceChanged(Car car, int costPrice) {
+        append(record(CAR_COST_PRICE).writeVarInt(car.getCarId()).writeVarInt(costPrice));
+    }
+
+    void carColorChanged(Car car, String color) {
+        append(record(CAR_COLOR).writeVarInt(car.getCarId()).writeString(color));
+    }
+
+    // One record for the fields changed together by modifyCar, so they are replayed all or nothing
+    void carModified(Car car, String numberPlate, String color, int rentPricePerDay, int costPrice) {
+        append(record(CAR_MODIFIED)
+                .writeVarInt(car.getCarId())
+                .writeString(numberPlate)
+                .writeString(color)
+                .writeVarInt(rentPricePerDay)
+                .writeVarInt(costPrice));
+    }
+
+    void customerNameChanged(Customer customer, String name) {
+        append(record(CUSTOMER_NAME).writeVarInt(customer.getCustomerId()).writeString(name));
+    }
+
+    void customerAgeChanged(Customer customer, int age) {
+        append(record(CUSTOMER_AGE).writeVarInt(customer.getCustomerId()).writeVarInt(age));
+    }
+
+    void customerLicenseNumberChanged(Customer customer, String licenseNumber) {
+        append(record(CUSTOMER_LICENSE).writeVarInt(customer.getCustomerId()).writeString(licenseNumber));
+    }
+
+    void customerNationalIDNumberChanged(Customer customer, String nationalIDNumber) {
+        append(record(CUSTOMER_NATIONAL_ID).writeVarInt(customer.getCustomerId()).writeString(nationalIDNumber));
+    }
+
+    private void append(BinaryOutput record) {
+        if (batch != null) {
+            batch.add(record.toByteArray());
+            return;
+        }
+        try {
+            journal.append(record.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to the journal " + journal.getPath(), e);
+        }
+    }
+
+    // Method to hold back the following records, so a whole batch of changes is written and synced at once
+    void beginBatch() {
+        batch = new ArrayList<>();
+    }
+
+    // Method to write every record held back since beginBatch() and wait until they are durable
+    void commitBatch() {
+        List<byte[]> records = batch;
+        batch = null;
+        try {
+            journal.appendAll(records);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to the journal " + journal.getPath(), e);
+        }
+    }
+
+    // Number of the segment records are currently appended to
+    long segment() {
+        return segment;
+    }
+
+    // Size in bytes of the current segment
+    long size() {
+        return journal.size();
+    }
+
+    /**
+     * Closes the current segment and continues in the next one. Every record appended so far is durable,
+     * since append only returns once its record is on disk.
+     * @return the number of the new segment
+     * @throws IOException
+     */
+    long rotate() throws IOException {
+        Journal next = new Journal(segmentPath(directory, segment + 1), true);
+        journal.close();
+        journal = next;
+        return ++segment;
+    }
+
+    /**
+     * Deletes the segments numbered below the given one, once a snapshot makes them unnecessary
+     * @param segment
+     * @throws IOException
+     */
+    void deleteSegmentsBefore(long segment) throws IOException {
+        for (long old : segments(directory)) {
+            if (old < segment) {
+                Files.deleteIfExists(segmentPath(directory, old));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    /**
+     * Applies the records of every segment from the given one on to the controller, in the order they were written
+     * @param directory
+     * @param fromSegment number of the first segment to apply
+     * @param controller a controller without a journal attached
+     * @return the number of the last segment found, or fromSegment when there is none
+     * @throws IOException
+     */
+    static long replay(Path directory, long fromSegment, Controller controller) throws IOException {
+        long last = fromSegment;
+        for (long segment : segments(directory)) {
+            if (segment >= fromSegment) {
+                Journal.replay(segmentPath(directory, segment), record -> apply(new BinaryInput(record), controller));
+                last = segment;
+            }
+        }
+        return last;
+    }
+
+    // Numbers of the segment files in a directory, in ascending order
+    private static List<Long> segments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not a segment of ours
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static void apply(BinaryInput record, Controller controller) {
+        int type = record.readByte();
+        if (type == CAR_ADDED) {
+            controller.insertCar(EntityCodec.readCar(record, null));
+            return;
+        }
+        if (type == CUSTOMER_ADDED) {
+            controller.insertCustomer(EntityCodec.readCustomer(record));
+            return;
+        }
+        if (type == RESERVATION_ADDED) {
+            controller.insertReservation(EntityCodec.readReservation(record,
+                    carId -> car(controller, carId), customerId -> customer(controller, customerId)));
+            return;
+        }
+        int id = record.readVarInt();
+        switch (type) {
+            case CAR_REMOVED:
+                controller.deleteCar(car(controller, id));
+                break;
+            case CUSTOMER_REMOVED:
+                controller.deleteCustomer(customer(controller, id));
+                break;
+            case CAR_RENTED:
+                Customer renter = customer(controller, record.readVarInt());
+                Date dateOfRent = new Date(record.readVarLong());
+                controller.startRental(renter, car(controller, id), record.readVarInt(), dateOfRent);
+                break;
+            case CARS_RENTED:
+                Customer customer = customer(controller, id);
+                Date batchDateOfRent = new Date(record.readVarLong());
+                int numberOfDays = record.readVarInt();
+                int count = record.readVarInt();
+                for (int i = 0; i < count; i++) {
+                    controller.startRental(customer, car(controller, record.readVarInt()), numberOfDays, batchDateOfRent);
+                }
+                break;
+            case CAR_RETURNED:
+                controller.endRental(car(controller, id), new Date(record.readVarLong()));
+                break;
+            case RESERVATION_CANCELLED:
+                // The reservation may already be gone, dropped with its car or customer or left out of the
+                // snapshot; cancelling it again changes nothing
+                Reservation reservation = controller.findReservationById(id);
+                if (reservation != null) {
+                    controller.deleteReservation(reservation);
+                }
+                break;
+            case CAR_NAME:
+                car(controller, id).setName(record.readString());
+                break;
+            case CAR_BRAND:
+                car(controller, id).setBrand(record.readString());
+                break;
+            case CAR_PLATE:
+                car(controller, id).setNumberPlate(record.readString());
+                break;
+            case CAR_RENT_PRICE:
+                car(controller, id).setRentPricePerDay(record.readVarInt());
+                break;
+            case CAR_COST_PRICE:
+                car(controller, id).setCostPrice(record.readVarInt());
+                break;
+            case CAR_COLOR:
+                car(controller, id).setColor(record.readString());
+                break;
+            case CAR_MODIFIED:
+                controller.applyCarModification(car(controller, id), record.readString(), record.readString(),
+                        record.readVarInt(), record.readVarInt());
+                break;
+            case CUSTOMER_NAME:
+                customer(controller, id).setName(record.readString());
+                break;
+            case CUSTOMER_AGE:
+                customer(controller, id).setAge(record.readVarInt());
+                break;
+            case CUSTOMER_LICENSE:
+                customer(controller, id).setLicenseNumber(record.readString());
+                break;
+            case CUSTOMER_NATIONAL_ID:
+                customer(controller, id).setNationalIDNumber(record.readString());
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static Car car(Controller controller, int carId) {
+        Car car = controller.findCarById(carId);
+        if (car == null) {
+            throw new IllegalStateException("Journal refers to unknown car " + carId);
+        }
+        return car;
+    }
+
+    private static Customer customer(Controller controller, int customerId) {
+        Customer customer = controller.findCustomerById(customerId);
+        if (customer == null) {
+            throw new IllegalStateException("Journal refers to unknown customer " + customerId);
+        }
+        return customer;
+    }
+
+    private static BinaryOutput record(byte type) {
+        return new BinaryOutput().writeByte(type);
+    }
+}
@@ -0,0 +1,56 @@
+package main.controller;
+
+import main.model.Car;
+import main.model.Customer;
+
+/**
+ * Receives fine-grained change events from the Controller, so views can update only what changed.
+ * Events are delivered on the thread that made the change, after the change is complete and that thread has
+ * released the Controller's locks, so a listener may call the Controller and change cars and customers itself.
+ */
+
+public interface ControllerListener {
+
+    default void carAdded(Car car) {
+    }
+
+    default void carRemoved(Car car) {
+    }
+
+    // A property of the car (plate, price, color, ...) has changed
+    default void carUpdated(Car car) {
+    }
+
+    default void carRented(Car car) {
+    }
+
+    default void carReleased(Car car) {
+    }
+
+    // The rented car was not returned by its due date
+    default void carOverdue(Car car) {
+    }
+
+    // The car was taken out of the available cars for a while, see Controller.holdCar
+    default void carHeld(Car car) {
+    }
+
+    // The hold on the car expired or was given back, so it is available again
+    default void carHoldEnded(Car car) {
+    }
+
+    default void customerAdded(Customer customer) {
+    }
+
+    default void customerRemoved(Customer customer) {
+    }
+
+    // A property of the customer (name, license number, ...) has changed
+    default void customerUpdated(Customer customer) {
+    }
+
+    // A background task of the controller (checkpoint, hold expiry, overdue check, pipelined journal write) failed,
+    // on that task's thread
+    default void backgroundTaskFailed(String task, Exception error) {
+    }
+}
@@ -0,0 +1,367 @@
+package main.controller;
+
+import main.model.Car;
+import main.model.Customer;
+import main.model.Reservation;
+import main.persistence.BinaryInput;
+import main.persistence.BinaryOutput;
+import main.persistence.EntityCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Single-file binary snapshot of the cars, customers, active rentals, reservations and rental history of a Controller.
+ *
+ * Layout: a fixed header, an offset table each for the car, customer and reservation records, then the records
+ * themselves in the EntityCodec format, where a rented car carries the id of its renter, and finally the columns
+ * of the rental ledger, whose offset is in the header. The file is read into memory with one sequential read,
+ * and the offset tables give random access to any record without decoding the ones before it. It is not kept
+ * mapped: a mapping cannot be released on demand, and on Windows a mapped file cannot be replaced by the next
+ * checkpoint.
+ *
+ * Writing is split in three: capture() freezes the state at a point in time while the Controller holds off
+ * changes, Capture.encode() encodes it into memory and Image.write() puts it on disk, both while the Controller
+ * carries on.
+ */
+
+class ControllerSnapshot {
+
+    private static final int MAGIC = 0x43525331; // "CRS1"
+    private static final int VERSION = 5;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4 + 4 + 4 + 4 + 8;
+
+    private final ByteBuffer buffer;
+    private final BinaryInput in;
+    private final long journalSegment;
+    private final int nextCarId;
+    private final int nextCustomerId;
+    private final int nextReservationId;
+    private final int carCount;
+    private final int customerCount;
+    private final int reservationCount;
+    private final long ledgerOffset;
+
+    private ControllerSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        in = new BinaryInput(buffer);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a controller snapshot, or an unsupported version");
+        }
+        journalSegment = buffer.getLong(8);
+        nextCarId = buffer.getInt(16);
+        nextCustomerId = buffer.getInt(20);
+        nextReservationId = buffer.getInt(24);
+        carCount = buffer.getInt(28);
+        customerCount = buffer.getInt(32);
+        reservationCount = buffer.getInt(36);
+        ledgerOffset = buffer.getLong(40);
+    }
+
+    /**
+     * Reads a snapshot file into memory; the file is closed again before this returns
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    static ControllerSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + path + " is too large to load");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Snapshot " + path + " ended early");
+                }
+            }
+            buffer.flip();
+            return new ControllerSnapshot(buffer);
+        }
+    }
+
+    // Number of the first journal segment whose changes are not included in the snapshot
+    long getJournalSegment() {
+        return journalSegment;
+    }
+
+    int getCarCount() {
+        return carCount;
+    }
+
+    int getCustomerCount() {
+        return customerCount;
+    }
+
+    /**
+     * Decodes the car stored at the given index of the car offset table
+     * @param index
+     * @param renters resolves the id of a renter, may be null to leave the car without renter
+     * @return
+     */
+    Car readCar(int index, IntFunction<Customer> renters) {
+        buffer.position((int) buffer.getLong(carTableOffset() + 8 * index));
+        return EntityCodec.readCar(in, renters);
+    }
+
+    // Decodes the customer stored at the given index of the customer offset table
+    Customer readCustomer(int index) {
+        buffer.position((int) buffer.getLong(customerTableOffset() + 8 * index));
+        return EntityCodec.readCustomer(in);
+    }
+
+    // Decodes the reservation stored at the given index of the reservation offset table
+    Reservation readReservation(int index, IntFunction<Car> cars, IntFunction<Customer> customers) {
+        buffer.position((int) buffer.getLong(reservationTableOffset() + 8 * index));
+        return EntityCodec.readReservation(in, cars, customers);
+    }
+
+    /**
+     * Loads the whole snapshot into a controller
+     * @param controller an empty controller without a journal attached
+     */
+    void restore(Controller controller) {
+        for (int i = 0; i < customerCount; i++) {
+            controller.insertCustomer(readCustomer(i));
+        }
+        for (int i = 0; i < carCount; i++) {
+            Car car = readCar(i, controller::findCustomerById);
+            Customer renter = car.getCurrentUser();
+            car.setCurrentUser(null);
+            controller.insertCar(car);
+            if (renter != null) {
+                controller.restoreRental(renter, car);
+            }
+        }
+        for (int i = 0; i < reservationCount; i++) {
+            controller.insertReservation(readReservation(i, controller::findCarById, controller::findCustomerById));
+        }
+        // The ledger rows of the rentals restored above are replaced by the saved history, which already has them
+        buffer.position((int) ledgerOffset);
+        controller.getRentalLedger().read(in);
+        controller.restoreIds(nextCarId, nextCustomerId, nextReservationId);
+    }
+
+    private int carTableOffset() {
+        return HEADER_SIZE;
+    }
+
+    private int customerTableOffset() {
+        return HEADER_SIZE + 8 * carCount;
+    }
+
+    private int reservationTableOffset() {
+        return customerTableOffset() + 8 * customerCount;
+    }
+
+    /**
+     * Freezes the given state without encoding it yet. Only references are taken here, so the controller needs
+     * to hold off changes just for this call; Capture.encode() then encodes the state as it was at this point,
+     * while changes go on.
+     * @param cars every car in the system, ordered by id
+     * @param customers every customer in the system, ordered by id
+     * @param reservations every reservation in the system
+     * @param ledger history of every rental
+     * @param nextCarId
+     * @param nextCustomerId
+     * @param nextReservationId
+     * @param journalSegment number of the first journal segment with changes made after this point
+     * @return
+     */
+    static Capture capture(List<Car> cars, List<Customer> customers, List<Reservation> reservations, RentalLedger ledger,
+                           int nextCarId, int nextCustomerId, int nextReservationId, long journalSegment) {
+        return new Capture(cars, customers, reservations, ledger, nextCarId, nextCustomerId, nextReservationId,
+                journalSegment);
+    }
+
+    /**
+     * State frozen by capture(), waiting to be encoded. Cars and customers are encoded one by one in id order;
+     * a change made in the meantime calls preserve() first, which keeps the record of the entity as it was if it
+     * has not been encoded yet, and encode() uses that record instead of the changed entity. Reservations never
+     * change, and the ledger keeps its frozen rows apart itself.
+     */
+    static class Capture {
+        private final List<Car> cars;
+        private final List<Customer> customers;
+        private final List<Reservation> reservations;
+        private final RentalLedger ledger;
+        private final int ledgerRows;
+        private final int nextCarId;
+        private final int nextCustomerId;
+        private final int nextReservationId;
+        private final long journalSegment;
+        // Records kept by preserve(), and the ids below which encode() has dealt with every entity; guarded by this
+        private final Map<Car, byte[]> carRecords = new IdentityHashMap<>();
+        private final Map<Customer, byte[]> customerRecords = new IdentityHashMap<>();
+        private int encodedCarsBelow;
+        private int encodedCustomersBelow;
+        private boolean encoded;
+
+        private Capture(List<Car> cars, List<Customer> customers, List<Reservation> reservations, RentalLedger ledger,
+                        int nextCarId, int nextCustomerId, int nextReservationId, long journalSegment) {
+            this.cars = cars;
+            this.customers = customers;
+            this.reservations = reservations;
+            this.ledger = ledger;
+            ledgerRows = ledger.freeze();
+            this.nextCarId = nextCarId;
+            this.nextCustomerId = nextCustomerId;
+            this.nextReservationId = nextReservationId;
+            this.journalSegment = journalSegment;
+        }
+
+        // Method to call before a car of the captured state changes; cars added after the capture have larger ids
+        synchronized void preserve(Car car) {
+            int id = car.getCarId();
+            if (!encoded && id >= encodedCarsBelow && id < nextCarId && !carRecords.containsKey(car)) {
+                BinaryOutput record = new BinaryOutput();
+                EntityCodec.writeCar(record, car);
+                carRecords.put(car, record.toByteArray());
+            }
+        }
+
+        // Method to call before a customer of the captured state changes
+        synchronized void preserve(Customer customer) {
+            int id = customer.getCustomerId();
+            if (!encoded && id >= encodedCustomersBelow && id < nextCustomerId && !customerRecords.containsKey(customer)) {
+                BinaryOutput record = new BinaryOutput();
+                EntityCodec.writeCustomer(record, customer);
+                customerRecords.put(customer, record.toByteArray());
+            }
+        }
+
+        long getJournalSegment() {
+            return journalSegment;
+        }
+
+        // Method to encode the captured state into memory; may run on any thread, once
+        Image encode() {
+            BinaryOutput records = new BinaryOutput(48 * cars.size() + 40 * customers.size() + 24 * reservations.size() + 64);
+            int[] carOffsets = new int[cars.size()];
+            int[] customerOffsets = new int[customers.size()];
+            int[] reservationOffsets = new int[reservations.size()];
+            for (int i = 0; i < cars.size(); i++) {
+                carOffsets[i] = records.size();
+                writeCar(records, cars.get(i));
+            }
+            for (int i = 0; i < customers.size(); i++) {
+                customerOffsets[i] = records.size();
+                writeCustomer(records, customers.get(i));
+            }
+            for (int i = 0; i < reservations.size(); i++) {
+                reservationOffsets[i] = records.size();
+                EntityCodec.writeReservation(records, reservations.get(i));
+            }
+            synchronized (this) {
+                encoded = true;
+                carRecords.clear();
+                customerRecords.clear();
+            }
+            int ledgerOffset = records.size();
+            ledger.write(records, ledgerRows);
+            return new Image(records, carOffsets, customerOffsets, reservationOffsets, ledgerOffset,
+                    nextCarId, nextCustomerId, nextReservationId, journalSegment);
+        }
+
+        // A car is encoded holding the lock, so a change either comes after it or has preserved the car before
+        private synchronized void writeCar(BinaryOutput records, Car car) {
+            byte[] record = carRecords.remove(car);
+            if (record != null) {
+                records.writeBytes(record);
+            } else {
+                EntityCodec.writeCar(records, car);
+            }
+            encodedCarsBelow = car.getCarId() + 1;
+        }
+
+        private synchronized void writeCustomer(BinaryOutput records, Customer customer) {
+            byte[] record = customerRecords.remove(customer);
+            if (record != null) {
+                records.writeBytes(record);
+            } else {
+                EntityCodec.writeCustomer(records, customer);
+            }
+            encodedCustomersBelow = customer.getCustomerId() + 1;
+        }
+    }
+
+    // State encoded by Capture.encode(), detached from the live cars and customers
+    static class Image {
+        private final BinaryOutput records;
+        private final int[] carOffsets;
+        private final int[] customerOffsets;
+        private final int[] reservationOffsets;
+        private final int ledgerOffset;
+        private final int nextCarId;
+        private final int nextCustomerId;
+        private final int nextReservationId;
+        private final long journalSegment;
+
+        private Image(BinaryOutput records, int[] carOffsets, int[] customerOffsets, int[] reservationOffsets,
+                      int ledgerOffset, int nextCarId, int nextCustomerId, int nextReservationId, long journalSegment) {
+            this.records = records;
+            this.carOffsets = carOffsets;
+            this.customerOffsets = customerOffsets;
+            this.reservationOffsets = reservationOffsets;
+            this.ledgerOffset = ledgerOffset;
+            this.nextCarId = nextCarId;
+            this.nextCustomerId = nextCustomerId;
+            this.nextReservationId = nextReservationId;
+            this.journalSegment = journalSegment;
+        }
+
+        long getJournalSegment() {
+            return journalSegment;
+        }
+
+        /**
+         * Writes the snapshot to a temporary file next to the target, forces it to disk and then moves it
+         * into place, so a crash never leaves a half-written snapshot behind
+         * @param path
+         * @throws IOException
+         */
+        void write(Path path) throws IOException {
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            int recordsOffset = HEADER_SIZE + 8 * (carOffsets.length + customerOffsets.length + reservationOffsets.length);
+            ByteBuffer tables = ByteBuffer.allocate(recordsOffset);
+            tables.putInt(MAGIC);
+            tables.putInt(VERSION);
+            tables.putLong(journalSegment);
+            tables.putInt(nextCarId);
+            tables.putInt(nextCustomerId);
+            tables.putInt(nextReservationId);
+            tables.putInt(carOffsets.length);
+            tables.putInt(customerOffsets.length);
+            tables.putInt(reservationOffsets.length);
+            tables.putLong(recordsOffset + (long) ledgerOffset);
+            for (int offset : carOffsets) {
+                tables.putLong(recordsOffset + (long) offset);
+            }
+            for (int offset : customerOffsets) {
+                tables.putLong(recordsOffset + (long) offset);
+            }
+            for (int offset : reservationOffsets) {
+                tables.putLong(recordsOffset + (long) offset);
+            }
+            tables.flip();
+            ByteBuffer body = records.asByteBuffer();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (tables.hasRemaining() || body.hasRemaining()) {
+                    channel.write(new ByteBuffer[] {tables, body});
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
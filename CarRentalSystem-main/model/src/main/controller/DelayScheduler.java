@@ -0,0 +1,56 @@
+package main.controller;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.function.Consumer;
+
+/**
+ * Calls back for entries once their deadline has passed. Every entry sits in a delay queue (a min-heap on the
+ * deadline), and one thread sleeps until the earliest deadline is due, so each entry costs O(log n) once and
+ * nothing is scanned periodically. Entries cannot be cancelled; one that no longer matters when it comes up is
+ * recognised as stale by the callback and ignored.
+ */
+
+class DelayScheduler<T extends Delayed> {
+
+    private final DelayQueue<T> queue = new DelayQueue<>();
+    private final Consumer<T> onDue;
+    private final Consumer<RuntimeException> onFailure;
+    private final Thread thread;
+
+    // @param threadName name of the scheduler thread
+    // @param onDue called on the scheduler thread for every entry whose deadline has passed
+    // @param onFailure called on the scheduler thread when onDue throws, after which the scheduler carries on
+    DelayScheduler(String threadName, Consumer<T> onDue, Consumer<RuntimeException> onFailure) {
+        this.onDue = onDue;
+        this.onFailure = onFailure;
+        thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void schedule(T entry) {
+        queue.add(entry);
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                onDue.accept(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                onFailure.accept(e);
+            }
+        }
+    }
+
+    void stop() {
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package main.controller;
+
+import main.model.Car;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The moment a rented car should be back. Returning the car leaves the entry scheduled; it is recognised as
+ * stale once it comes up, because the car is no longer rented with that due date.
+ */
+
+class Due implements Delayed {
+
+    private final Car car;
+    private final long dateOfReturn;
+
+    Due(Car car, long dateOfReturn) {
+        this.car = car;
+        this.dateOfReturn = dateOfReturn;
+    }
+
+    Car getCar() {
+        return car;
+    }
+
+    long getDateOfReturn() {
+        return dateOfReturn;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(dateOfReturn - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        return Long.compare(dateOfReturn, ((Due) other).dateOfReturn);
+    }
+}
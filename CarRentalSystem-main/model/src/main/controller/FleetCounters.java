@@ -0,0 +1,162 @@
+package main.controller;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counts of the fleet, kept up to date by the Controller on every add, remove, rent and release, so a
+ * dashboard can read any of them in O(1) instead of walking the car and customer lists.
+ *
+ * Every counter is atomic and may be read from any thread. Counts read one after the other may come from
+ * slightly different moments while changes go on.
+ */
+
+public class FleetCounters {
+
+    private final AtomicInteger cars = new AtomicInteger();
+    private final AtomicInteger available = new AtomicInteger();
+    private final AtomicInteger rented = new AtomicInteger();
+    private final AtomicInteger overdue = new AtomicInteger();
+    private final AtomicInteger customersWithRentals = new AtomicInteger();
+    private final AtomicLong outstandingRevenue = new AtomicLong();
+    private final Map<String, Counts> byBrand = new ConcurrentHashMap<>();
+    private final Map<String, Counts> byName = new ConcurrentHashMap<>();
+
+    FleetCounters() {
+    }
+
+    // Number of cars in the system
+    public int getCars() {
+        return cars.get();
+    }
+
+    public int getAvailable() {
+        return available.get();
+    }
+
+    public int getRented() {
+        return rented.get();
+    }
+
+    // Cars neither available nor rented, because they are held for a customer
+    public int getHeld() {
+        return Math.max(0, cars.get() - available.get() - rented.get());
+    }
+
+    public int getOverdue() {
+        return overdue.get();
+    }
+
+    // Number of customers renting at least one car
+    public int getCustomersWithRentals() {
+        return customersWithRentals.get();
+    }
+
+    // Total rent price of the rentals still out
+    public long getOutstandingRevenue() {
+        return outstandingRevenue.get();
+    }
+
+    // Brands with at least one available or rented car, in alphabetical order
+    public Set<String> getBrands() {
+        return Collections.unmodifiableSet(new TreeSet<>(byBrand.keySet()));
+    }
+
+    // Car names with at least one available or rented car, in alphabetical order
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(byName.keySet()));
+    }
+
+    public int getAvailableByBrand(String brand) {
+        Counts counts = byBrand.get(brand);
+        return counts == null ? 0 : counts.available;
+    }
+
+    public int getRentedByBrand(String brand) {
+        Counts counts = byBrand.get(brand);
+        return counts == null ? 0 : counts.rented;
+    }
+
+    public int getAvailableByName(String name) {
+        Counts counts = byName.get(name);
+        return counts == null ? 0 : counts.available;
+    }
+
+    public int getRentedByName(String name) {
+        Counts counts = byName.get(name);
+        return counts == null ? 0 : counts.rented;
+    }
+
+    void carAdded() {
+        cars.incrementAndGet();
+    }
+
+    void carRemoved() {
+        cars.decrementAndGet();
+    }
+
+    // A car became available (delta 1) or stopped being available (delta -1)
+    void available(String brand, String name, int delta) {
+        available.addAndGet(delta);
+        add(byBrand, brand, delta, 0);
+        add(byName, name, delta, 0);
+    }
+
+    // A car was rented (delta 1) or released (delta -1) with the given total rent price
+    void rented(String brand, String name, int totalRentPrice, int delta) {
+        rented.addAndGet(delta);
+        outstandingRevenue.addAndGet((long) delta * totalRentPrice);
+        add(byBrand, brand, 0, delta);
+        add(byName, name, 0, delta);
+    }
+
+    void overdue(int delta) {
+        overdue.addAndGet(delta);
+    }
+
+    void customersWithRentals(int delta) {
+        customersWithRentals.addAndGet(delta);
+    }
+
+    // Moves the counts of one car from its old brand to its new one
+    void brandChanged(String oldBrand, String newBrand, boolean isAvailable, boolean isRented) {
+        move(byBrand, oldBrand, newBrand, isAvailable, isRented);
+    }
+
+    // Moves the counts of one car from its old name to its new one
+    void nameChanged(String oldName, String newName, boolean isAvailable, boolean isRented) {
+        move(byName, oldName, newName, isAvailable, isRented);
+    }
+
+    private static void move(Map<String, Counts> counters, String from, String to, boolean isAvailable, boolean isRented) {
+        int available = isAvailable ? 1 : 0;
+        int rented = isRented ? 1 : 0;
+        add(counters, from, -available, -rented);
+        add(counters, to, available, rented);
+    }
+
+    // Changes the counts of one key atomically, so a key is dropped once it has no available or rented car left
+    // without losing a change made to it at the same time
+    private static void add(Map<String, Counts> counters, String key, int available, int rented) {
+        counters.compute(key, (k, counts) -> {
+            int newAvailable = available + (counts == null ? 0 : counts.available);
+            int newRented = rented + (counts == null ? 0 : counts.rented);
+            return newAvailable == 0 && newRented == 0 ? null : new Counts(newAvailable, newRented);
+        });
+    }
+
+    private static class Counts {
+        private final int available;
+        private final int rented;
+
+        Counts(int available, int rented) {
+            this.available = available;
+            this.rented = rented;
+        }
+    }
+}
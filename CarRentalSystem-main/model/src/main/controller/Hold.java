@@ -0,0 +1,43 @@
+package main.controller;
+
+import main.model.Car;
+import main.model.Customer;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A car kept out of the available cars for one customer until a deadline. A hold that was converted to a
+ * rental or released before its deadline is ignored when it comes up.
+ */
+
+class Hold implements Delayed {
+
+    private final Car car;
+    private final Customer customer;
+    private final long deadline;
+
+    Hold(Car car, Customer customer, long ttl, TimeUnit unit) {
+        this.car = car;
+        this.customer = customer;
+        this.deadline = System.nanoTime() + unit.toNanos(ttl);
+    }
+
+    Car getCar() {
+        return car;
+    }
+
+    Customer getCustomer() {
+        return customer;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        return Long.compare(deadline, ((Hold) other).deadline);
+    }
+}
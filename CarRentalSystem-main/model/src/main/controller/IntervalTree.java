@@ -0,0 +1,182 @@
+package main.controller;
+
+import java.util.function.Consumer;
+
+/**
+ * Balanced (AVL) tree of half-open intervals [start, end), ordered by start and then by an id that tells apart
+ * intervals with the same start. Every node also keeps the largest end found in its subtree, so a query for the
+ * intervals overlapping a range skips every subtree that ends before the range, and costs O(log n + k).
+ * Not thread-safe; callers synchronize.
+ */
+
+class IntervalTree<T> {
+
+    private Node<T> root;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds an interval
+     * @param start
+     * @param end must be greater than start
+     * @param id unique among the intervals with the same start
+     * @param value
+     */
+    void insert(long start, long end, int id, T value) {
+        root = insert(root, new Node<>(start, end, id, value));
+        size++;
+    }
+
+    // Method to remove the interval with the given start and id, returns false if there is none
+    boolean remove(long start, int id) {
+        int before = size;
+        root = remove(root, start, id);
+        return size < before;
+    }
+
+    // Method to pass every value whose interval overlaps [from, to) to the consumer, in start order
+    void overlapping(long from, long to, Consumer<T> consumer) {
+        overlapping(root, from, to, consumer);
+    }
+
+    private static <T> void overlapping(Node<T> node, long from, long to, Consumer<T> consumer) {
+        if (node == null || node.maxEnd <= from) {
+            return;
+        }
+        overlapping(node.left, from, to, consumer);
+        if (node.start >= to) {
+            // Everything to the right starts even later
+            return;
+        }
+        if (node.end > from) {
+            consumer.accept(node.value);
+        }
+        overlapping(node.right, from, to, consumer);
+    }
+
+    private static int compare(long start, int id, Node<?> node) {
+        int order = Long.compare(start, node.start);
+        return order != 0 ? order : Integer.compare(id, node.id);
+    }
+
+    private static <T> Node<T> insert(Node<T> node, Node<T> added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return balance(node);
+    }
+
+    private Node<T> remove(Node<T> node, long start, int id) {
+        if (node == null) {
+            return null;
+        }
+        int order = compare(start, id, node);
+        if (order < 0) {
+            node.left = remove(node.left, start, id);
+        } else if (order > 0) {
+            node.right = remove(node.right, start, id);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node<T> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeFirst(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    private static <T> Node<T> removeFirst(Node<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeFirst(node.left);
+        return balance(node);
+    }
+
+    private static <T> Node<T> balance(Node<T> node) {
+        update(node);
+        int skew = height(node.left) - height(node.right);
+        if (skew > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (skew < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static <T> Node<T> rotateLeft(Node<T> node) {
+        Node<T> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static <T> Node<T> rotateRight(Node<T> node) {
+        Node<T> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node<?> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.maxEnd = node.end;
+        if (node.left != null) {
+            node.maxEnd = Math.max(node.maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            node.maxEnd = Math.max(node.maxEnd, node.right.maxEnd);
+        }
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static class Node<T> {
+        private final long start;
+        private final long end;
+        private final int id;
+        private final T value;
+        private long maxEnd;
+        private int height = 1;
+        private Node<T> left;
+        private Node<T> right;
+
+        Node(long start, long end, int id, T value) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.value = value;
+            this.maxEnd = end;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package main.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared by many keys (car ids, customer ids, ...). Each key always maps to the same lock,
+ * so operations on different keys usually proceed in parallel while memory stays bounded.
+ */
+
+class LockStripes {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    // The number of stripes is rounded up to a power of two
+    LockStripes(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    // Method to get the lock guarding a key
+    ReentrantLock get(int key) {
+        return locks[index(key)];
+    }
+
+    // Method to get the distinct locks guarding several keys, in stripe order, so that taking them
+    // one after the other in that order can never deadlock with another thread doing the same
+    List<ReentrantLock> getAll(int[] keys) {
+        boolean[] needed = new boolean[locks.length];
+        for (int key : keys) {
+            needed[index(key)] = true;
+        }
+        List<ReentrantLock> result = new ArrayList<>();
+        for (int i = 0; i < locks.length; i++) {
+            if (needed[i]) {
+                result.add(locks[i]);
+            }
+        }
+        return result;
+    }
+
+    private int index(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,70 @@
+package main.controller;
+
+import main.model.Car;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Sorted index from a price of a car (rent per day, cost price, ...) to the cars having that price.
+ * Range queries walk only the matching price buckets, so they cost O(log n + k).
+ * add, remove and nearest may be called from several threads; range returns a live view, which callers
+ * must only read while no other thread changes the index.
+ */
+
+class PriceIndex {
+
+    private final NavigableMap<Integer, Set<Car>> buckets = new TreeMap<>();
+
+    synchronized void add(int price, Car car) {
+        buckets.computeIfAbsent(price, key -> new LinkedHashSet<>()).add(car);
+    }
+
+    synchronized void remove(int price, Car car) {
+        Set<Car> bucket = buckets.get(price);
+        if (bucket != null) {
+            bucket.remove(car);
+            if (bucket.isEmpty()) {
+                buckets.remove(price);
+            }
+        }
+    }
+
+    // Method to get the buckets of every price between minPrice and maxPrice (both included), cheapest first
+    Collection<Set<Car>> range(int minPrice, int maxPrice) {
+        return buckets.subMap(minPrice, true, maxPrice, true).values();
+    }
+
+    // Method to get up to k cars whose price is closest to the given price, closest first.
+    // Walks outwards from the price in both directions, so it costs O(log n + k).
+    synchronized List<Car> nearest(int price, int k) {
+        List<Car> result = new ArrayList<>(Math.min(k, 16));
+        Iterator<Map.Entry<Integer, Set<Car>>> above = buckets.tailMap(price, true).entrySet().iterator();
+        Iterator<Map.Entry<Integer, Set<Car>>> below = buckets.headMap(price, false).descendingMap().entrySet().iterator();
+        Map.Entry<Integer, Set<Car>> up = above.hasNext() ? above.next() : null;
+        Map.Entry<Integer, Set<Car>> down = below.hasNext() ? below.next() : null;
+        while (result.size() < k && (up != null || down != null)) {
+            boolean takeUp = down == null || (up != null && (long) up.getKey() - price <= (long) price - down.getKey());
+            Set<Car> bucket = takeUp ? up.getValue() : down.getValue();
+            for (Car car : bucket) {
+                if (result.size() == k) {
+                    break;
+                }
+                result.add(car);
+            }
+            if (takeUp) {
+                up = above.hasNext() ? above.next() : null;
+            } else {
+                down = below.hasNext() ? below.next() : null;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,281 @@
+package main.controller;
+
+import main.persistence.BinaryInput;
+import main.persistence.BinaryOutput;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only history of every rental, kept after the car is returned and rented again.
+ *
+ * Rows are stored column by column in chunked primitive int arrays (car id, customer id, start epoch day, days
+ * booked, amount, return epoch day), about 24 bytes per rental, so years of history stay in memory for reporting.
+ * Appending never copies rows: a full chunk is simply followed by a new one. A row is opened when a car is
+ * rented and closed when it comes back, both in O(1).
+ *
+ * Rows below size() never move and only their return day changes once, so readers may scan them from any
+ * thread while rentals go on.
+ */
+
+public class RentalLedger {
+
+    // Return day of a rental that is still active
+    public static final int NOT_RETURNED = Integer.MIN_VALUE;
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final IntColumn carIds = new IntColumn();
+    private final IntColumn customerIds = new IntColumn();
+    private final IntColumn startDays = new IntColumn();
+    private final IntColumn days = new IntColumn();
+    private final IntColumn amounts = new IntColumn();
+    private final IntColumn returnDays = new IntColumn();
+    // Row of the active rental of each rented car, by car id
+    private final Map<Integer, Integer> openRows = new HashMap<>();
+    // While a snapshot is being written: its number of rows, and those of its rows closed since it was taken
+    private int frozenRows;
+    private Set<Integer> closedSinceFreeze;
+    private volatile int size;
+
+    // An empty ledger, filled by the controller's rentals; other ledgers are made with a Builder
+    RentalLedger() {
+    }
+
+    // Number of rows, active rentals included
+    public int size() {
+        return size;
+    }
+
+    public int getCarId(int row) {
+        return carIds.get(row);
+    }
+
+    public int getCustomerId(int row) {
+        return customerIds.get(row);
+    }
+
+    // Day the rental started, in days since 1970-01-01 (UTC)
+    public int getStartDay(int row) {
+        return startDays.get(row);
+    }
+
+    // Number of days the car was rented for
+    public int getDays(int row) {
+        return days.get(row);
+    }
+
+    // Total rent price of the rental
+    public int getAmount(int row) {
+        return amounts.get(row);
+    }
+
+    // Day the car came back, or NOT_RETURNED
+    public int getReturnDay(int row) {
+        return returnDays.get(row);
+    }
+
+    public static int epochDay(Date date) {
+        return (int) Math.floorDiv(date.getTime(), TimeUnit.DAYS.toMillis(1));
+    }
+
+    /**
+     * Records the start of a rental
+     * @param carId
+     * @param customerId
+     * @param dateOfRent
+     * @param numberOfDays
+     * @param amount
+     */
+    synchronized void open(int carId, int customerId, Date dateOfRent, int numberOfDays, int amount) {
+        openRows.put(carId, size);
+        append(carId, customerId, epochDay(dateOfRent), numberOfDays, amount, NOT_RETURNED);
+    }
+
+    // Method to record the return of a rented car, on the row opened when it was rented
+    synchronized void close(int carId, Date dateOfReturn) {
+        Integer row = openRows.remove(carId);
+        if (row != null) {
+            if (closedSinceFreeze != null && row < frozenRows) {
+                closedSinceFreeze.add(row);
+            }
+            returnDays.set(row, epochDay(dateOfReturn));
+        }
+    }
+
+    /**
+     * Adds a finished or active rental as it is, without tracking it as the active rental of its car
+     * @param carId
+     * @param customerId
+     * @param startDay
+     * @param numberOfDays
+     * @param amount
+     * @param returnDay day the car came back, or NOT_RETURNED
+     */
+    synchronized void add(int carId, int customerId, int startDay, int numberOfDays, int amount, int returnDay) {
+        append(carId, customerId, startDay, numberOfDays, amount, returnDay);
+    }
+
+    private void append(int carId, int customerId, int startDay, int numberOfDays, int amount, int returnDay) {
+        int row = size;
+        carIds.set(row, carId);
+        customerIds.set(row, customerId);
+        startDays.set(row, startDay);
+        days.set(row, numberOfDays);
+        amounts.set(row, amount);
+        returnDays.set(row, returnDay);
+        // Publishing the new size last makes the whole row visible to readers at once
+        size = row + 1;
+    }
+
+    /**
+     * Builds a ledger of past rentals, e.g. for imports or benchmarks. The ledger the controller hands out can
+     * only be read, so its rows always match the rentals that happened.
+     */
+    public static class Builder {
+        private RentalLedger ledger = new RentalLedger();
+
+        /**
+         * Adds a finished or active rental
+         * @param carId
+         * @param customerId
+         * @param startDay
+         * @param numberOfDays
+         * @param amount
+         * @param returnDay day the car came back, or NOT_RETURNED
+         * @return this builder
+         */
+        public Builder add(int carId, int customerId, int startDay, int numberOfDays, int amount, int returnDay) {
+            if (ledger == null) {
+                throw new IllegalStateException("Ledger already built");
+            }
+            ledger.add(carId, customerId, startDay, numberOfDays, amount, returnDay);
+            return this;
+        }
+
+        public RentalLedger build() {
+            if (ledger == null) {
+                throw new IllegalStateException("Ledger already built");
+            }
+            RentalLedger built = ledger;
+            ledger = null;
+            return built;
+        }
+    }
+
+    /**
+     * Marks the current rows as the ones the next write() encodes, as they are now
+     * @return the number of rows to pass to write()
+     */
+    synchronized int freeze() {
+        frozenRows = size;
+        closedSinceFreeze = new HashSet<>();
+        return frozenRows;
+    }
+
+    /**
+     * Encodes the rows frozen by freeze(), column after column, without holding off rentals: rows are only
+     * appended after them, and the rows closed since the freeze are written as still active. Start days are
+     * stored as the difference to the previous row, which is mostly 0 or 1 since rows are appended in time order.
+     * @param out
+     * @param rows the value returned by freeze()
+     */
+    void write(BinaryOutput out, int rows) {
+        // Read before the rows closed meanwhile are collected, so a return seen here is always among them
+        int[] returned = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            returned[row] = returnDays.get(row);
+        }
+        synchronized (this) {
+            for (int row : closedSinceFreeze) {
+                returned[row] = NOT_RETURNED;
+            }
+            closedSinceFreeze = null;
+        }
+        out.writeVarInt(rows);
+        for (int row = 0; row < rows; row++) {
+            out.writeVarInt(carIds.get(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.writeVarInt(customerIds.get(row));
+        }
+        int previous = 0;
+        for (int row = 0; row < rows; row++) {
+            out.writeVarLong((long) startDays.get(row) - previous);
+            previous = startDays.get(row);
+        }
+        for (int row = 0; row < rows; row++) {
+            out.writeVarInt(days.get(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.writeVarInt(amounts.get(row));
+        }
+        // Days until the return plus one, 0 while the car is still out
+        for (int row = 0; row < rows; row++) {
+            int returnDay = returned[row];
+            out.writeVarInt(returnDay == NOT_RETURNED ? 0 : returnDay - startDays.get(row) + 1);
+        }
+    }
+
+    /**
+     * Replaces the rows with the ones encoded by write(), and takes the rows that are not returned as the
+     * active rentals
+     * @param in
+     */
+    synchronized void read(BinaryInput in) {
+        int rows = in.readVarInt();
+        openRows.clear();
+        for (int row = 0; row < rows; row++) {
+            carIds.set(row, in.readVarInt());
+        }
+        for (int row = 0; row < rows; row++) {
+            customerIds.set(row, in.readVarInt());
+        }
+        long previous = 0;
+        for (int row = 0; row < rows; row++) {
+            previous += in.readVarLong();
+            startDays.set(row, (int) previous);
+        }
+        for (int row = 0; row < rows; row++) {
+            days.set(row, in.readVarInt());
+        }
+        for (int row = 0; row < rows; row++) {
+            amounts.set(row, in.readVarInt());
+        }
+        for (int row = 0; row < rows; row++) {
+            int returned = in.readVarInt();
+            returnDays.set(row, returned == 0 ? NOT_RETURNED : startDays.get(row) + returned - 1);
+            if (returned == 0) {
+                openRows.put(carIds.get(row), row);
+            }
+        }
+        size = rows;
+    }
+
+    // One column of ints split into fixed-size chunks, so growing it never copies the values already stored
+    private static class IntColumn {
+        private int[][] chunks = new int[8][];
+
+        int get(int row) {
+            return chunks[row >>> CHUNK_BITS][row & CHUNK_MASK];
+        }
+
+        void set(int row, int value) {
+            int chunk = row >>> CHUNK_BITS;
+            if (chunk >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new int[CHUNK_SIZE];
+            }
+            chunks[chunk][row & CHUNK_MASK] = value;
+        }
+    }
+}
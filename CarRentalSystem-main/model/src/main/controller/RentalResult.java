@@ -0,0 +1,63 @@
+package main.controller;
+
+import main.model.Car;
+
+/**
+ * Outcome for one number plate of a batch rental. A batch is all or nothing: either every car is RENTED,
+ * or none is and the cars that were fine report NOT_RENTED.
+ */
+
+public class RentalResult {
+
+    public enum Status {
+        RENTED("Rented"),
+        CUSTOMER_NOT_FOUND("Customer not found"),
+        CAR_NOT_FOUND("Car not found"),
+        DUPLICATE("Listed more than once"),
+        NOT_AVAILABLE("Car is not available for rent"),
+        NOT_RENTED("Not rented because another car of the booking failed");
+
+        private final String label;
+
+        Status(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final String numberPlate;
+    private final Status status;
+    private final Car car;
+
+    RentalResult(String numberPlate, Status status, Car car) {
+        this.numberPlate = numberPlate;
+        this.status = status;
+        this.car = car;
+    }
+
+    public String getNumberPlate() {
+        return numberPlate;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // The car with that plate, or null when there is none
+    public Car getCar() {
+        return car;
+    }
+
+    public boolean isRented() {
+        return status == Status.RENTED;
+    }
+
+    @Override
+    public String toString() {
+        return numberPlate + ": " + status;
+    }
+}
@@ -0,0 +1,113 @@
+package main.controller;
+
+import main.model.Car;
+import main.model.Customer;
+import main.model.Reservation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Every reservation of every car. Each car has its own calendar, sorted by start, in which reservations never
+ * overlap, so checking one car over a range is a floor lookup plus the few bookings inside the range. All
+ * reservations are also kept in one interval tree, which finds the cars booked over a range in O(log n + k)
+ * without looking at the calendars of the cars that are free. The cars out on rent are kept in a second interval
+ * tree over their planned rental period, so the cars that are busy over a range come from the trees alone.
+ * Methods may be called from several threads.
+ */
+
+class ReservationCalendar {
+
+    private final Map<Integer, NavigableMap<Long, Reservation>> byCar = new HashMap<>();
+    private final Map<Integer, Reservation> byId = new HashMap<>();
+    private final IntervalTree<Reservation> intervals = new IntervalTree<>();
+    // Planned period of every rental in progress, from its date of rent to its due date, with the car id as id
+    private final IntervalTree<Car> rentals = new IntervalTree<>();
+
+    synchronized void add(Reservation reservation) {
+        byCar.computeIfAbsent(reservation.getCar().getCarId(), key -> new TreeMap<>())
+                .put(reservation.getFrom().getTime(), reservation);
+        byId.put(reservation.getReservationId(), reservation);
+        intervals.insert(reservation.getFrom().getTime(), reservation.getTo().getTime(),
+                reservation.getReservationId(), reservation);
+    }
+
+    synchronized boolean remove(Reservation reservation) {
+        if (byId.remove(reservation.getReservationId()) == null) {
+            return false;
+        }
+        NavigableMap<Long, Reservation> calendar = byCar.get(reservation.getCar().getCarId());
+        calendar.remove(reservation.getFrom().getTime());
+        if (calendar.isEmpty()) {
+            byCar.remove(reservation.getCar().getCarId());
+        }
+        intervals.remove(reservation.getFrom().getTime(), reservation.getReservationId());
+        return true;
+    }
+
+    synchronized Reservation get(int reservationId) {
+        return byId.get(reservationId);
+    }
+
+    // Method to get the reservations of a car that overlap [from, to), earliest first
+    synchronized List<Reservation> overlapping(Car car, long from, long to) {
+        List<Reservation> result = new ArrayList<>();
+        NavigableMap<Long, Reservation> calendar = byCar.get(car.getCarId());
+        if (calendar == null) {
+            return result;
+        }
+        // Bookings of one car never overlap, so only the last one starting before the range can reach into it
+        Map.Entry<Long, Reservation> before = calendar.lowerEntry(from);
+        if (before != null && before.getValue().getTo().getTime() > from) {
+            result.add(before.getValue());
+        }
+        result.addAll(calendar.subMap(from, true, to, false).values());
+        return result;
+    }
+
+    // Method to call once a car is rented, with its date of rent and due date set
+    synchronized void rentalStarted(Car car) {
+        long start = car.getDateOfRent().getTime();
+        rentals.insert(start, Math.max(car.getDateOfReturn().getTime(), start + 1), car.getCarId(), car);
+    }
+
+    // Method to call when a rented car is returned, before its date of rent is cleared
+    synchronized void rentalEnded(Car car) {
+        rentals.remove(car.getDateOfRent().getTime(), car.getCarId());
+    }
+
+    // Method to get the ids of the cars with a reservation, or a rental as planned, overlapping [from, to)
+    synchronized Set<Integer> busyCarIds(long from, long to) {
+        Set<Integer> result = new HashSet<>();
+        intervals.overlapping(from, to, reservation -> result.add(reservation.getCar().getCarId()));
+        rentals.overlapping(from, to, car -> result.add(car.getCarId()));
+        return result;
+    }
+
+    // Method to get every reservation of a car, earliest first
+    synchronized List<Reservation> forCar(Car car) {
+        NavigableMap<Long, Reservation> calendar = byCar.get(car.getCarId());
+        return calendar == null ? new ArrayList<>() : new ArrayList<>(calendar.values());
+    }
+
+    // Method to get every reservation made by a customer; walks all reservations
+    synchronized List<Reservation> forCustomer(Customer customer) {
+        List<Reservation> result = new ArrayList<>();
+        for (Reservation reservation : byId.values()) {
+            if (reservation.getCustomer() == customer) {
+                result.add(reservation);
+            }
+        }
+        return result;
+    }
+
+    synchronized List<Reservation> all() {
+        return new ArrayList<>(byId.values());
+    }
+}
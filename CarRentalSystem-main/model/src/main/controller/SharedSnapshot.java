@@ -0,0 +1,49 @@
+package main.controller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only copy of one of the controller's collections. The copy is made on the first read after a change
+ * and then handed to every caller until the collection changes again, so repeated reads cost nothing.
+ * Safe to use from several threads; a copy taken while the collection changes is not kept.
+ */
+
+class SharedSnapshot<T> {
+
+    private final Collection<T> source;
+    private final AtomicInteger version = new AtomicInteger();
+    private transient volatile Copy<T> copy;
+
+    SharedSnapshot(Collection<T> source) {
+        this.source = source;
+    }
+
+    List<T> get() {
+        int current = version.get();
+        Copy<T> cached = copy;
+        if (cached == null || cached.version != current) {
+            cached = new Copy<>(Collections.unmodifiableList(new ArrayList<>(source)), current);
+            copy = cached;
+        }
+        return cached.list;
+    }
+
+    // Method to call after every change of the source collection
+    void invalidate() {
+        version.incrementAndGet();
+    }
+
+    private static class Copy<T> {
+        private final List<T> list;
+        private final int version;
+
+        Copy(List<T> list, int version) {
+            this.list = list;
+            this.version = version;
+        }
+    }
+}
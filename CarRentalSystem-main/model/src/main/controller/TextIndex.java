@@ -0,0 +1,70 @@
+package main.controller;
+
+import main.model.Car;
+
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Multimap from a text attribute of a car (name, brand, ...) to the cars carrying it.
+ * Keys are stored normalized (Unicode NFKC, trimmed, inner whitespace collapsed and case folded),
+ * so a single bucket answers both exact and case-insensitive lookups.
+ */
+
+class TextIndex {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Map<String, Set<Car>> buckets = new HashMap<>();
+
+    // Method to turn a value into the key it is indexed under
+    static String normalize(String value) {
+        if (isPlainAscii(value)) {
+            return value.toLowerCase(Locale.ROOT);
+        }
+        String key = Normalizer.normalize(value, Normalizer.Form.NFKC).trim();
+        return WHITESPACE.matcher(key).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    // True for printable ASCII without leading, trailing or repeated spaces, which NFKC and trimming leave as is
+    private static boolean isPlainAscii(String value) {
+        int length = value.length();
+        if (length > 0 && (value.charAt(0) == ' ' || value.charAt(length - 1) == ' ')) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < ' ' || c > '~' || (c == ' ' && value.charAt(i - 1) == ' ')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void add(String value, Car car) {
+        buckets.computeIfAbsent(normalize(value), key -> new LinkedHashSet<>()).add(car);
+    }
+
+    void remove(String value, Car car) {
+        String key = normalize(value);
+        Set<Car> bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.remove(car);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    // Method to get every car whose value matches ignoring case and spacing differences
+    Set<Car> get(String value) {
+        Set<Car> bucket = buckets.get(normalize(value));
+        return bucket == null ? Collections.emptySet() : bucket;
+    }
+}
@@ -0,0 +1,100 @@
+package main.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Dictionary of the car attributes that take few distinct values (name, brand and color). Every distinct value
+ * gets a small int code the first time it is seen, and keeps it for the life of the JVM, so a car stores three
+ * ints instead of three strings of its own, and filters compare codes instead of calling String.equals.
+ *
+ * The dictionary is shared by all cars; codes are never reused, so values are not removed when the last car
+ * using them goes away. It therefore only ever grows, by one entry per distinct value seen since the JVM started,
+ * whether or not a car still has it: a few kilobytes for real fleets, where these attributes take a few hundred
+ * values, but without bound if they are filled with free text that is different for every car. Safe for use
+ * from any thread.
+ */
+
+public class AttributeDictionary {
+
+    // Code of null, which has no entry
+    public static final int NO_CODE = -1;
+
+    private static final AttributeDictionary SHARED = new AttributeDictionary();
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    // Grows by doubling; a new code is stored before the array is published again, so readers always see it
+    private volatile String[] values = new String[64];
+    private int size;
+
+    AttributeDictionary() {
+    }
+
+    // The dictionary used by every Car
+    public static AttributeDictionary shared() {
+        return SHARED;
+    }
+
+    /**
+     * Code of a value, giving it a new code if it has none yet
+     * @param value
+     * @return NO_CODE for null
+     */
+    public int intern(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    // Code of a value, NO_CODE if it was never interned
+    public int find(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        return code == null ? NO_CODE : code;
+    }
+
+    // Value of a code, null for NO_CODE
+    public String value(int code) {
+        return code == NO_CODE ? null : values[code];
+    }
+
+    // Number of distinct values
+    public synchronized int size() {
+        return size;
+    }
+
+    // Codes of the values accepted by the filter, for example value -> value.equalsIgnoreCase(brand)
+    public BitSet findAll(Predicate<String> filter) {
+        int size = size();
+        String[] values = this.values;
+        BitSet matches = new BitSet(size);
+        for (int code = 0; code < size; code++) {
+            if (filter.test(values[code])) {
+                matches.set(code);
+            }
+        }
+        return matches;
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        String[] values = this.values;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        this.values = values;
+        codes.put(value, size);
+        return size++;
+    }
+}
@@ -1,26 +1,38 @@
 package main.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.Objects;
 
 /**
  * Class for keeping car details, getting information about a car and setting up details
+ *
+ * Name, brand and color are kept as codes of the shared AttributeDictionary, so cars of the same brand share one
+ * string, and filters can compare the codes directly.
  */
 
 public class Car implements Serializable {
 
+    private static final long serialVersionUID = 1L;
+
+    private static final AttributeDictionary ATTRIBUTES = AttributeDictionary.shared();
+
     private int carId;
-    private String name;
-    private String brand;
+    private transient int nameCode;
+    private transient int brandCode;
     private String numberPlate;
     private int rentPricePerDay;
     private int numberOfDays;
     private int costPrice;
     private int totalRentPrice;
-    private String color;
+    private transient int colorCode;
     private Customer currentUser;
     private Date dateOfRent;
     private Date dateOfReturn;
+    private transient CarListener listener;
 
     /**
      *
@@ -35,12 +47,12 @@ public class Car implements Serializable {
 
     public Car(int carId, String name, String brand, String numberPlate, int rentPricePerDay, int costPrice, String color) {
         this.carId = carId;
-        this.name = name;
-        this.brand = brand;
+        this.nameCode = ATTRIBUTES.intern(name);
+        this.brandCode = ATTRIBUTES.intern(brand);
         this.numberPlate = numberPlate;
         this.rentPricePerDay = rentPricePerDay;
         this.costPrice = costPrice;
-        this.color = color;
+        this.colorCode = ATTRIBUTES.intern(color);
         numberOfDays = 0;
         totalRentPrice = 0;
     }
@@ -73,6 +85,11 @@ public class Car implements Serializable {
         this.totalRentPrice = this.rentPricePerDay * this.numberOfDays;
     }
 
+    // Sets the total a rental was agreed at, which stays the same if the price per day changes meanwhile
+    public void setTotalRentPrice(int totalRentPrice) {
+        this.totalRentPrice = totalRentPrice;
+    }
+
     public Date getDateOfReturn() {
         return dateOfReturn;
     }
@@ -82,19 +99,45 @@ public class Car implements Serializable {
     }
 
     public String getName() {
-        return name;
+        return ATTRIBUTES.value(nameCode);
+    }
+
+    // Code of the name in the shared AttributeDictionary
+    public int getNameCode() {
+        return nameCode;
     }
 
     public void setName(String name) {
-        this.name = name;
+        int code = ATTRIBUTES.intern(name);
+        boolean notify = listener != null && code != nameCode;
+        if (notify) {
+            listener.nameChanging(this, name);
+        }
+        nameCode = code;
+        if (notify) {
+            listener.carChanged(this);
+        }
     }
 
     public String getBrand() {
-        return brand;
+        return ATTRIBUTES.value(brandCode);
+    }
+
+    // Code of the brand in the shared AttributeDictionary
+    public int getBrandCode() {
+        return brandCode;
     }
 
     public void setBrand(String brand) {
-        this.brand = brand;
+        int code = ATTRIBUTES.intern(brand);
+        boolean notify = listener != null && code != brandCode;
+        if (notify) {
+            listener.brandChanging(this, brand);
+        }
+        brandCode = code;
+        if (notify) {
+            listener.carChanged(this);
+        }
     }
 
     public String getNumberPlate() {
@@ -102,7 +145,14 @@ public class Car implements Serializable {
     }
 
     public void setNumberPlate(String numberPlate) {
+        boolean notify = listener != null && !Objects.equals(numberPlate, this.numberPlate);
+        if (notify) {
+            listener.numberPlateChanging(this, numberPlate);
+        }
         this.numberPlate = numberPlate;
+        if (notify) {
+            listener.carChanged(this);
+        }
     }
 
     public int getRentPricePerDay() {
@@ -110,7 +160,14 @@ public class Car implements Serializable {
     }
 
     public void setRentPricePerDay(int rentPricePerDay) {
+        boolean notify = listener != null && rentPricePerDay != this.rentPricePerDay;
+        if (notify) {
+            listener.rentPricePerDayChanging(this, rentPricePerDay);
+        }
         this.rentPricePerDay = rentPricePerDay;
+        if (notify) {
+            listener.carChanged(this);
+        }
     }
 
     public int getCostPrice() {
@@ -118,15 +175,35 @@ public class Car implements Serializable {
     }
 
     public void setCostPrice(int costPrice) {
+        boolean notify = listener != null && costPrice != this.costPrice;
+        if (notify) {
+            listener.costPriceChanging(this, costPrice);
+        }
         this.costPrice = costPrice;
+        if (notify) {
+            listener.carChanged(this);
+        }
     }
 
     public String getColor() {
-        return color;
+        return ATTRIBUTES.value(colorCode);
+    }
+
+    // Code of the color in the shared AttributeDictionary
+    public int getColorCode() {
+        return colorCode;
     }
 
     public void setColor(String color) {
-        this.color = color;
+        int code = ATTRIBUTES.intern(color);
+        boolean notify = listener != null && code != colorCode;
+        if (notify) {
+            listener.colorChanging(this, color);
+        }
+        colorCode = code;
+        if (notify) {
+            listener.carChanged(this);
+        }
     }
 
     public Customer getCurrentUser() {
@@ -145,6 +222,14 @@ public class Car implements Serializable {
         this.carId = carId;
     }
 
+    public CarListener getListener() {
+        return listener;
+    }
+
+    public void setListener(CarListener listener) {
+        this.listener = listener;
+    }
+
     /**
      * Returns the car details into a well structured string [sentence]
      * @return
@@ -152,11 +237,26 @@ public class Car implements Serializable {
     @Override
     public String toString() {
         return  "carId=" + carId +
-                ", name='" + name + '\'' +
-                ", brand='" + brand + '\'' +
+                ", name='" + getName() + '\'' +
+                ", brand='" + getBrand() + '\'' +
                 ", numberPlate='" + numberPlate + '\'' +
                 ", rentPricePerDay=" + rentPricePerDay +
                 ", costPrice=" + costPrice +
-                ", color='" + color + '\'';
+                ", color='" + getColor() + '\'';
+    }
+
+    // The codes are only valid in this JVM, so the values themselves are written
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(getName());
+        out.writeObject(getBrand());
+        out.writeObject(getColor());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        nameCode = ATTRIBUTES.intern((String) in.readObject());
+        brandCode = ATTRIBUTES.intern((String) in.readObject());
+        colorCode = ATTRIBUTES.intern((String) in.readObject());
     }
 }
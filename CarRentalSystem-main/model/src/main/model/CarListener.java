@@ -0,0 +1,58 @@
+package main.model;
+
+/**
+ * Callback used to keep lookup indexes in step with changes made directly on a car.
+ * The "changing" callbacks are called before the new value is stored, so the car still holds the old value,
+ * and may throw an IllegalArgumentException to reject the change. carChanged follows once the value is stored.
+ */
+
+public interface CarListener {
+
+    /**
+     * Called before the number plate of a car is changed
+     * @param car
+     * @param newNumberPlate
+     */
+    void numberPlateChanging(Car car, String newNumberPlate);
+
+    /**
+     * Called before the name of a car is changed
+     * @param car
+     * @param newName
+     */
+    void nameChanging(Car car, String newName);
+
+    /**
+     * Called before the brand of a car is changed
+     * @param car
+     * @param newBrand
+     */
+    void brandChanging(Car car, String newBrand);
+
+    /**
+     * Called before the rent price per day of a car is changed
+     * @param car
+     * @param newRentPricePerDay
+     */
+    void rentPricePerDayChanging(Car car, int newRentPricePerDay);
+
+    /**
+     * Called before the cost price of a car is changed
+     * @param car
+     * @param newCostPrice
+     */
+    void costPriceChanging(Car car, int newCostPrice);
+
+    /**
+     * Called before the color of a car is changed
+     * @param car
+     * @param newColor
+     */
+    void colorChanging(Car car, String newColor);
+
+    /**
+     * Called after any of the properties above has been changed
+     * @param car
+     */
+    void carChanged(Car car);
+}
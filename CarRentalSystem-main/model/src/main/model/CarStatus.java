@@ -0,0 +1,23 @@
+package main.model;
+
+/**
+ * Rental status of a car within the system
+ */
+
+public enum CarStatus {
+    AVAILABLE("Available"),
+    HELD("On hold"),
+    RENTED("Rented"),
+    OVERDUE("Overdue");
+
+    private final String label;
+
+    CarStatus(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
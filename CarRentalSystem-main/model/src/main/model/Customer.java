@@ -1,8 +1,9 @@
 package main.model;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Class for keeping customer details, getting information about customer and setting up details
@@ -10,12 +11,15 @@ import java.util.List;
 
 public class Customer implements Serializable {
 
+    private static final long serialVersionUID = 1L;
+
     private int customerId;
     private String name;
     private int age;
     private String licenseNumber;
     private String nationalIDNumber;
     private List<Car> carsRented;
+    private transient CustomerListener listener;
 
     /**
      *
@@ -31,7 +35,7 @@ public class Customer implements Serializable {
         this.age = age;
         this.licenseNumber = licenseNumber;
         this.nationalIDNumber = nationalIDNumber;
-        carsRented = new ArrayList<>();
+        carsRented = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -45,7 +49,14 @@ public class Customer implements Serializable {
     }
 
     public void setName(String name) {
+        boolean notify = listener != null && !Objects.equals(name, this.name);
+        if (notify) {
+            listener.nameChanging(this, name);
+        }
         this.name = name;
+        if (notify) {
+            listener.customerChanged(this);
+        }
     }
 
     public int getAge() {
@@ -53,7 +64,14 @@ public class Customer implements Serializable {
     }
 
     public void setAge(int age) {
+        boolean notify = listener != null && age != this.age;
+        if (notify) {
+            listener.ageChanging(this, age);
+        }
         this.age = age;
+        if (notify) {
+            listener.customerChanged(this);
+        }
     }
 
     public String getLicenseNumber() {
@@ -61,7 +79,14 @@ public class Customer implements Serializable {
     }
 
     public void setLicenseNumber(String licenseNumber) {
+        boolean notify = listener != null && !Objects.equals(licenseNumber, this.licenseNumber);
+        if (notify) {
+            listener.licenseNumberChanging(this, licenseNumber);
+        }
         this.licenseNumber = licenseNumber;
+        if (notify) {
+            listener.customerChanged(this);
+        }
     }
 
     public String getNationalIDNumber() {
@@ -69,7 +94,14 @@ public class Customer implements Serializable {
     }
 
     public void setNationalIDNumber(String nationalIDNumber) {
+        boolean notify = listener != null && !Objects.equals(nationalIDNumber, this.nationalIDNumber);
+        if (notify) {
+            listener.nationalIDNumberChanging(this, nationalIDNumber);
+        }
         this.nationalIDNumber = nationalIDNumber;
+        if (notify) {
+            listener.customerChanged(this);
+        }
     }
 
     public List<Car> getCarsRented() {
@@ -84,6 +116,14 @@ public class Customer implements Serializable {
         this.customerId = customerId;
     }
 
+    public CustomerListener getListener() {
+        return listener;
+    }
+
+    public void setListener(CustomerListener listener) {
+        this.listener = listener;
+    }
+
     /**
      * Display in a more clear and detailed way
      * @return
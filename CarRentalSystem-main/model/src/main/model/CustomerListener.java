@@ -0,0 +1,44 @@
+package main.model;
+
+/**
+ * Callback used to keep lookup indexes in step with changes made directly on a customer.
+ * The "changing" callbacks are called before the new value is stored, so the customer still holds the old value,
+ * and may throw an IllegalArgumentException to reject the change. customerChanged follows once the value is stored.
+ */
+
+public interface CustomerListener {
+
+    /**
+     * Called before the name of a customer is changed
+     * @param customer
+     * @param newName
+     */
+    void nameChanging(Customer customer, String newName);
+
+    /**
+     * Called before the age of a customer is changed
+     * @param customer
+     * @param newAge
+     */
+    void ageChanging(Customer customer, int newAge);
+
+    /**
+     * Called before the license number of a customer is changed
+     * @param customer
+     * @param newLicenseNumber
+     */
+    void licenseNumberChanging(Customer customer, String newLicenseNumber);
+
+    /**
+     * Called before the national ID number of a customer is changed
+     * @param customer
+     * @param newNationalIDNumber
+     */
+    void nationalIDNumberChanging(Customer customer, String newNationalIDNumber);
+
+    /**
+     * Called after any of the properties above has been changed
+     * @param customer
+     */
+    void customerChanged(Customer customer);
+}
@@ -0,0 +1,72 @@
+package main.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Class for keeping a future booking of a car by a customer, over the dates from (included) to (excluded)
+ */
+
+public class Reservation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int reservationId;
+    private final Car car;
+    private final Customer customer;
+    private final Date from;
+    private final Date to;
+
+    /**
+     *
+     * @param reservationId
+     * @param car
+     * @param customer
+     * @param from first moment the car is booked
+     * @param to moment the car is free again, after from
+     */
+
+    public Reservation(int reservationId, Car car, Customer customer, Date from, Date to) {
+        if (!from.before(to)) {
+            throw new IllegalArgumentException("A reservation must end after it starts");
+        }
+        this.reservationId = reservationId;
+        this.car = car;
+        this.customer = customer;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Getters
+     */
+
+    public int getReservationId() {
+        return reservationId;
+    }
+
+    public Car getCar() {
+        return car;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return  "reservationId=" + reservationId +
+                ", numberPlate='" + car.getNumberPlate() + '\'' +
+                ", customer='" + customer.getName() + '\'' +
+                ", from=" + from +
+                ", to=" + to;
+    }
+}
@@ -0,0 +1,108 @@
+package main.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the primitive encodings shared by the journal, snapshots and exports:
+ * unsigned LEB128 varints, zigzag varlongs and length-prefixed UTF-8 strings.
+ * An instance can be reset and reused to avoid allocating a new buffer per record.
+ */
+
+public class BinaryOutput {
+
+    private byte[] bytes;
+    private int size;
+
+    public BinaryOutput() {
+        this(64);
+    }
+
+    public BinaryOutput(int capacity) {
+        bytes = new byte[capacity];
+    }
+
+    public BinaryOutput writeByte(int value) {
+        ensure(1);
+        bytes[size++] = (byte) value;
+        return this;
+    }
+
+    // Writes an int as an unsigned varint, 1 byte for values below 128 and at most 5 bytes
+    public BinaryOutput writeVarInt(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+        return this;
+    }
+
+    // Writes a long zigzag encoded, so small negative values stay short as well
+    public BinaryOutput writeVarLong(long value) {
+        ensure(10);
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        bytes[size++] = (byte) zigzag;
+        return this;
+    }
+
+    // Writes a string as its UTF-8 length followed by the UTF-8 bytes, ASCII strings are copied without encoding
+    public BinaryOutput writeString(String value) {
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            writeVarInt(length);
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                bytes[size++] = (byte) value.charAt(i);
+            }
+        } else {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+        return this;
+    }
+
+    // Writes bytes encoded earlier, as they are
+    public BinaryOutput writeBytes(byte[] value) {
+        ensure(value.length);
+        System.arraycopy(value, 0, bytes, size, value.length);
+        size += value.length;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    // Read-only view of the bytes written so far, without copying them
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, size).asReadOnlyBuffer();
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package main.persistence;
+
+import main.model.Car;
+import main.model.Customer;
+import main.model.Reservation;
+
+import java.util.Date;
+import java.util.function.IntFunction;
+
+/**
+ * Hand-written, versioned binary encoding of cars, customers and reservations, used by the journal, snapshots and exports
+ * in place of java.io.Serializable.
+ *
+ * Every record starts with a format version byte. Int fields are varints, and the rental relationship is stored
+ * once, on the car, as the id of its renter (0 when not rented) instead of a reference to the customer object,
+ * so encoding one entity never drags in the rest of the object graph.
+ */
+
+public final class EntityCodec {
+
+    // Version 2 adds the total rent price after the number of days
+    public static final int CAR_VERSION = 2;
+    public static final int CUSTOMER_VERSION = 1;
+    public static final int RESERVATION_VERSION = 1;
+
+    private static final int HAS_DATE_OF_RENT = 1;
+    private static final int HAS_DATE_OF_RETURN = 2;
+
+    private EntityCodec() {
+    }
+
+    /**
+     * Encodes a car
+     * @param out
+     * @param car
+     */
+    public static void writeCar(BinaryOutput out, Car car) {
+        Customer renter = car.getCurrentUser();
+        int flags = (car.getDateOfRent() != null ? HAS_DATE_OF_RENT : 0)
+                | (car.getDateOfReturn() != null ? HAS_DATE_OF_RETURN : 0);
+        out.writeByte(CAR_VERSION)
+                .writeVarInt(car.getCarId())
+                .writeString(car.getName())
+                .writeString(car.getBrand())
+                .writeString(car.getNumberPlate())
+                .writeVarInt(car.getRentPricePerDay())
+                .writeVarInt(car.getCostPrice())
+                .writeString(car.getColor())
+                .writeVarInt(renter == null ? 0 : renter.getCustomerId())
+                .writeVarInt(car.getNumberOfDays())
+                .writeVarInt(car.getTotalRentPrice())
+                .writeByte(flags);
+        if (car.getDateOfRent() != null) {
+            out.writeVarLong(car.getDateOfRent().getTime());
+        }
+        if (car.getDateOfReturn() != null) {
+            out.writeVarLong(car.getDateOfReturn().getTime());
+        }
+    }
+
+    /**
+     * Decodes a car
+     * @param in
+     * @param renters resolves the id of the renter to the customer, may be null to leave the car without renter
+     * @return
+     * @throws IllegalStateException if renters does not know the renter
+     */
+    public static Car readCar(BinaryInput in, IntFunction<Customer> renters) {
+        int version = in.readByte();
+        if (version != 1 && version != CAR_VERSION) {
+            throw new IllegalStateException("Unsupported car record version " + version);
+        }
+        Car car = new Car(in.readVarInt(), in.readString(), in.readString(), in.readString(),
+                in.readVarInt(), in.readVarInt(), in.readString());
+        int renterId = in.readVarInt();
+        if (renterId != 0 && renters != null) {
+            Customer renter = renters.apply(renterId);
+            if (renter == null) {
+                throw new IllegalStateException("Car " + car.getCarId() + " is rented by unknown customer " + renterId);
+            }
+            car.setCurrentUser(renter);
+        }
+        car.setNumberOfDays(in.readVarInt());
+        if (version == 1) {
+            car.setTotalRentPrice();
+        } else {
+            car.setTotalRentPrice(in.readVarInt());
+        }
+        int flags = in.readByte();
+        if ((flags & HAS_DATE_OF_RENT) != 0) {
+            car.setDateOfRent(new Date(in.readVarLong()));
+        }
+        if ((flags & HAS_DATE_OF_RETURN) != 0) {
+            car.setDateOfReturn(new Date(in.readVarLong()));
+        }
+        return car;
+    }
+
+    /**
+     * Encodes a customer; the cars the customer rents are recorded on the cars themselves
+     * @param out
+     * @param customer
+     */
+    public static void writeCustomer(BinaryOutput out, Customer customer) {
+        out.writeByte(CUSTOMER_VERSION)
+                .writeVarInt(customer.getCustomerId())
+                .writeString(customer.getName())
+                .writeVarInt(customer.getAge())
+                .writeString(customer.getLicenseNumber())
+                .writeString(customer.getNationalIDNumber());
+    }
+
+    /**
+     * Decodes a customer
+     * @param in
+     * @return
+     */
+    public static Customer readCustomer(BinaryInput in) {
+        int version = in.readByte();
+        if (version != CUSTOMER_VERSION) {
+            throw new IllegalStateException("Unsupported customer record version " + version);
+        }
+        return new Customer(in.readVarInt(), in.readString(), in.readVarInt(), in.readString(), in.readString());
+    }
+
+    /**
+     * Encodes a reservation, referring to its car and customer by id
+     * @param out
+     * @param reservation
+     */
+    public static void writeReservation(BinaryOutput out, Reservation reservation) {
+        out.writeByte(RESERVATION_VERSION)
+                .writeVarInt(reservation.getReservationId())
+                .writeVarInt(reservation.getCar().getCarId())
+                .writeVarInt(reservation.getCustomer().getCustomerId())
+                .writeVarLong(reservation.getFrom().getTime())
+                .writeVarLong(reservation.getTo().getTime());
+    }
+
+    /**
+     * Decodes a reservation
+     * @param in
+     * @param cars resolves the id of the car
+     * @param customers resolves the id of the customer
+     * @return
+     */
+    public static Reservation readReservation(BinaryInput in, IntFunction<Car> cars, IntFunction<Customer> customers) {
+        int version = in.readByte();
+        if (version != RESERVATION_VERSION) {
+            throw new IllegalStateException("Unsupported reservation record version " + version);
+        }
+        int reservationId = in.readVarInt();
+        Car car = cars.apply(in.readVarInt());
+        Customer customer = customers.apply(in.readVarInt());
+        return new Reservation(reservationId, car, customer, new Date(in.readVarLong()), new Date(in.readVarLong()));
+    }
+}
@@ -0,0 +1,250 @@
+package main.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal file. Every record is framed as [length][crc32][payload] and written through a FileChannel.
+ *
+ * Appends use group commit: callers queue their record and wait until it is durable, and whichever caller finds
+ * no flush in progress writes every queued record with one write and one fsync on behalf of all of them.
+ */
+
+public class Journal implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean sync;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private long appendedRecords;
+    private long durableRecords;
+    private long size;
+    private boolean flushing;
+    private IOException failure;
+
+    /**
+     * Opens the journal for appending, cutting off any torn record left at the end by a crash
+     * @param path
+     * @param sync whether each group commit is forced to disk with fsync
+     * @throws IOException
+     */
+    public Journal(Path path, boolean sync) throws IOException {
+        this.path = path;
+        this.sync = sync;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = validLength(channel);
+        channel.truncate(size);
+        channel.position(size);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Number of bytes appended so far, including records still waiting for their group commit
+    public long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends one record and returns once it is durable
+     * @param payload
+     * @throws IOException
+     */
+    public void append(byte[] payload) throws IOException {
+        long record;
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            frame(payload);
+            record = ++appendedRecords;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(record);
+    }
+
+    /**
+     * Appends several records with a single write and returns once all of them are durable
+     * @param payloads
+     * @throws IOException
+     */
+    public void appendAll(List<byte[]> payloads) throws IOException {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        long record;
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            for (byte[] payload : payloads) {
+                frame(payload);
+            }
+            appendedRecords += payloads.size();
+            record = appendedRecords;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(record);
+    }
+
+    private void frame(byte[] payload) {
+        int needed = HEADER_SIZE + payload.length;
+        if (pending.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + needed));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        pending.putInt(payload.length);
+        pending.putInt((int) crc.getValue());
+        pending.put(payload);
+        size += needed;
+    }
+
+    private void awaitDurable(long record) throws IOException {
+        lock.lock();
+        try {
+            while (durableRecords < record) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                // This caller becomes the leader and commits everything queued so far
+                flushing = true;
+                ByteBuffer batch = pending;
+                long batchEnd = appendedRecords;
+                pending = ByteBuffer.allocate(batch.capacity());
+                lock.unlock();
+                IOException error = null;
+                try {
+                    batch.flip();
+                    while (batch.hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    if (sync) {
+                        channel.force(false);
+                    }
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+                flushing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableRecords = batchEnd;
+                }
+                flushed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads every intact record of a journal file in order, stopping at the first torn or corrupt record
+     * @param path
+     * @param consumer receives each payload
+     * @return the number of records read
+     * @throws IOException
+     */
+    public static long replay(Path path, Consumer<ByteBuffer> consumer) throws IOException {
+        return replay(path, 0, consumer);
+    }
+
+    /**
+     * Reads every intact record of a journal file in order, starting at a record boundary such as a size() taken earlier
+     * @param path
+     * @param from byte offset of the first record to read
+     * @param consumer receives each payload
+     * @return the number of records read
+     * @throws IOException
+     */
+    public static long replay(Path path, long from, Consumer<ByteBuffer> consumer) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            return scan(in, from, consumer);
+        }
+    }
+
+    private static long validLength(FileChannel in) throws IOException {
+        scan(in, 0, null);
+        return in.position();
+    }
+
+    // Reads records from the given offset and leaves the channel's position just after the last intact one
+    private static long scan(FileChannel in, long from, Consumer<ByteBuffer> consumer) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long position = from;
+        long records = 0;
+        long length = in.size();
+        while (position + HEADER_SIZE <= length) {
+            header.clear();
+            readFully(in, header, position);
+            header.flip();
+            int payloadLength = header.getInt();
+            int checksum = header.getInt();
+            if (payloadLength < 0 || position + HEADER_SIZE + payloadLength > length) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+            readFully(in, payload, position + HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array(), 0, payloadLength);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            if (consumer != null) {
+                payload.flip();
+                consumer.accept(payload);
+            }
+            position += HEADER_SIZE + payloadLength;
+            records++;
+        }
+        in.position(position);
+        return records;
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+        }
+    }
+}
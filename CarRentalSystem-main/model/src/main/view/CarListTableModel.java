@@ -0,0 +1,54 @@
+package main.view;
+
+import main.model.Car;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+
+/**
+ * Read-only table model over a list of cars, such as search results. The list is not copied and
+ * cells are only built for the rows the table paints, so large result sets open instantly.
+ */
+
+class CarListTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"ID", "Name", "Brand", "License Plate", "Price/Day", "Cost Price", "Color"};
+
+    private final List<Car> cars;
+
+    CarListTableModel(List<Car> cars) {
+        this.cars = cars;
+    }
+
+    @Override
+    public int getRowCount() {
+        return cars.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Car car = cars.get(row);
+        switch (column) {
+            case 0: return car.getCarId();
+            case 1: return car.getName();
+            case 2: return car.getBrand();
+            case 3: return car.getNumberPlate();
+            case 4: return "$" + car.getRentPricePerDay();
+            case 5: return "$" + car.getCostPrice();
+            case 6: return car.getColor();
+            default: return null;
+        }
+    }
+}
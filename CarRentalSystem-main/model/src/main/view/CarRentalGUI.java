@@ -1,28 +1,52 @@
 package main.view;
 
+import main.analytics.CarUtilization;
+import main.analytics.CustomerRevenue;
+import main.analytics.DailyRevenue;
+import main.analytics.RentalAnalytics;
 import main.controller.Controller;
+import main.controller.ControllerListener;
+import main.controller.FleetCounters;
+import main.controller.RentalLedger;
+import main.controller.RentalResult;
 import main.model.Car;
 import main.model.Customer;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.text.SimpleDateFormat;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Main GUI window for Car Rental System
  */
 public class CarRentalGUI extends JFrame {
+    // How long the Hold button in the rent dialog keeps a car for the customer
+    private static final long HOLD_MINUTES = 5;
+    // Number of days covered by the revenue and utilization reports
+    private static final int REPORT_DAYS = 30;
+    // How often the dashboard reads the fleet counters
+    private static final int DASHBOARD_REFRESH_MILLIS = 1000;
+
     private Controller controller;
     private JTable carsTable;
     private JTable customersTable;
     private JTable rentalsTable;
-    private DefaultTableModel carsTableModel;
-    private DefaultTableModel customersTableModel;
-    private DefaultTableModel rentalsTableModel;
+    private CarsTableModel carsTableModel;
+    private CustomersTableModel customersTableModel;
+    private RentalsTableModel rentalsTableModel;
+    private OverdueTableModel overdueTableModel;
+    private ReportTableModel reportTableModel;
 
     public CarRentalGUI(Controller controller) {
         this.controller = controller;
@@ -49,6 +73,9 @@ public class CarRentalGUI extends JFrame {
         JTabbedPane tabbedPane = new JTabbedPane();
         tabbedPane.setFont(new Font("Arial", Font.PLAIN, 14));
 
+        // Dashboard tab
+        tabbedPane.addTab("📊 Dashboard", createDashboardPanel());
+
         // Cars tab
         tabbedPane.addTab("🚗 Cars", createCarsPanel());
 
@@ -58,8 +85,22 @@ public class CarRentalGUI extends JFrame {
         // Rentals tab
         tabbedPane.addTab("📋 Rentals", createRentalsPanel());
 
+        // Overdue tab
+        tabbedPane.addTab("⏰ Overdue", createOverduePanel());
+
+        // Reports tab
+        tabbedPane.addTab("📈 Reports", createReportsPanel());
+
         add(tabbedPane, BorderLayout.CENTER);
         add(statusLabel, BorderLayout.SOUTH);
+
+        // Checkpoints, hold expiry and overdue checks run on controller threads; their failures are shown here
+        controller.addControllerListener(new ControllerListener() {
+            @Override
+            public void backgroundTaskFailed(String task, Exception error) {
+                SwingUtilities.invokeLater(() -> showFailure(task, error));
+            }
+        });
     }
 
     private void updateStatus(String message) {
@@ -68,6 +109,70 @@ public class CarRentalGUI extends JFrame {
         }
     }
 
+    // Runs a controller call on a background thread so the EDT never waits for it. The status bar shows
+    // the task while it runs, and onDone receives the result back on the EDT.
+    private <T> void runInBackground(String progressMessage, Supplier<T> task, Consumer<T> onDone) {
+        runInBackground(progressMessage, task, onDone, error -> showFailure(progressMessage, error));
+    }
+
+    // Same as above, onFailure receives what the task threw back on the EDT
+    private <T> void runInBackground(String progressMessage, Supplier<T> task, Consumer<T> onDone, Consumer<Throwable> onFailure) {
+        updateStatus(progressMessage + "...");
+        new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() {
+                return task.get();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    onDone.accept(get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    onFailure.accept(ex.getCause());
+                }
+            }
+        }.execute();
+    }
+
+    // Runs a change through the controller in the background, since it waits for the journal to reach the disk.
+    // The button that asked for it stays disabled until it is done, so the same change is not sent twice.
+    private <T> void runChange(String progressMessage, AbstractButton button, Supplier<T> change, Consumer<T> onDone) {
+        runChange(progressMessage, button, change, onDone, error -> showFailure(progressMessage, error));
+    }
+
+    // Same as above, onFailure receives what the change threw back on the EDT
+    private <T> void runChange(String progressMessage, AbstractButton button, Supplier<T> change, Consumer<T> onDone,
+                               Consumer<Throwable> onFailure) {
+        button.setEnabled(false);
+        runInBackground(progressMessage, change, result -> {
+            button.setEnabled(true);
+            onDone.accept(result);
+        }, error -> {
+            button.setEnabled(true);
+            onFailure.accept(error);
+        });
+    }
+
+    // Method to tell the user that a task failed, through the status bar and an error dialog, must be called on the EDT
+    private void showFailure(String task, Throwable error) {
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        updateStatus(task + " failed: " + message);
+        JOptionPane.showMessageDialog(this, task + " failed:\n" + message, "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    // Method to show why a change asked for in a dialog failed; a rejected value is reported in the dialog so it can be corrected
+    private void showChangeFailure(Component parent, String task, Throwable error) {
+        if (error instanceof IllegalArgumentException) {
+            updateStatus(task + " failed");
+            JOptionPane.showMessageDialog(parent, error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        } else {
+            showFailure(task, error);
+        }
+    }
+
     private void createMenuBar() {
         JMenuBar menuBar = new JMenuBar();
 
@@ -146,13 +251,8 @@ public class CarRentalGUI extends JFrame {
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         // Table setup
-        String[] columns = {"ID", "Name", "Brand", "License Plate", "Price/Day", "Cost Price", "Color", "Status"};
-        carsTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        carsTableModel = new CarsTableModel(controller);
+        controller.addControllerListener(carsTableModel);
         carsTable = new JTable(carsTableModel);
         carsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         carsTable.setFont(new Font("Arial", Font.PLAIN, 12));
@@ -162,6 +262,7 @@ public class CarRentalGUI extends JFrame {
         JScrollPane scrollPane = new JScrollPane(carsTable);
         scrollPane.setBorder(BorderFactory.createTitledBorder("All Cars"));
         panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(createCarFilterPanel(), BorderLayout.NORTH);
 
         // Buttons panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 5));
@@ -221,18 +322,63 @@ public class CarRentalGUI extends JFrame {
         return panel;
     }
 
+    private JPanel createCarFilterPanel() {
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 5));
+        filterPanel.setBorder(BorderFactory.createTitledBorder("Filter"));
+
+        JComboBox<String> priceTypeBox = new JComboBox<>(new String[]{"Price/Day", "Cost Price"});
+        JTextField minPriceField = new JTextField(6);
+        JTextField maxPriceField = new JTextField(6);
+        JTextField brandField = new JTextField(8);
+        JTextField colorField = new JTextField(8);
+        JCheckBox availableOnlyBox = new JCheckBox("Available only", true);
+
+        JButton filterButton = new JButton("Filter");
+        filterButton.addActionListener(e -> {
+            try {
+                String minText = minPriceField.getText().trim();
+                String maxText = maxPriceField.getText().trim();
+                int minPrice = minText.isEmpty() ? 0 : Integer.parseInt(minText);
+                int maxPrice = maxText.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(maxText);
+                String brand = brandField.getText().trim();
+                String color = colorField.getText().trim();
+                boolean availableOnly = availableOnlyBox.isSelected();
+                boolean byRentPrice = priceTypeBox.getSelectedIndex() == 0;
+                String title = priceTypeBox.getSelectedItem() + " between $" + minPrice
+                        + " and " + (maxText.isEmpty() ? "any" : "$" + maxPrice);
+
+                runInBackground("Filtering cars", () -> byRentPrice
+                        ? controller.getCarsByRentPrice(minPrice, maxPrice, availableOnly, brand, color)
+                        : controller.getCarsByCostPrice(minPrice, maxPrice, availableOnly, brand, color), cars -> {
+                    updateStatus("Filter matched " + cars.size() + " car(s)");
+                    showCarSearchResults(cars, title);
+                });
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid price format!");
+            }
+        });
+
+        filterPanel.add(priceTypeBox);
+        filterPanel.add(new JLabel("from $"));
+        filterPanel.add(minPriceField);
+        filterPanel.add(new JLabel("to $"));
+        filterPanel.add(maxPriceField);
+        filterPanel.add(new JLabel("Brand:"));
+        filterPanel.add(brandField);
+        filterPanel.add(new JLabel("Color:"));
+        filterPanel.add(colorField);
+        filterPanel.add(availableOnlyBox);
+        filterPanel.add(filterButton);
+        return filterPanel;
+    }
+
     private JPanel createCustomersPanel() {
         JPanel panel = new JPanel(new BorderLayout(5, 5));
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         // Table setup
-        String[] columns = {"ID", "Name", "Age", "License Number", "National ID"};
-        customersTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        customersTableModel = new CustomersTableModel();
+        controller.addControllerListener(customersTableModel);
         customersTable = new JTable(customersTableModel);
         customersTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         customersTable.setFont(new Font("Arial", Font.PLAIN, 12));
@@ -290,13 +436,8 @@ public class CarRentalGUI extends JFrame {
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         // Table setup
-        String[] columns = {"Customer License", "Car License Plate", "Car Name", "Date of Rent", "Days", "Total Price"};
-        rentalsTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        rentalsTableModel = new RentalsTableModel();
+        controller.addControllerListener(rentalsTableModel);
         rentalsTable = new JTable(rentalsTableModel);
         rentalsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         rentalsTable.setFont(new Font("Arial", Font.PLAIN, 12));
@@ -350,68 +491,243 @@ public class CarRentalGUI extends JFrame {
     }
 
     private void refreshCarsTable() {
-        carsTableModel.setRowCount(0);
-        List<Car> cars = controller.getAllCars();
-        List<Car> rentedCars = controller.getRentedCars();
-        for (Car car : cars) {
-            // Check if car is rented by checking if it's in the rented list
-            boolean isRented = false;
-            for (Car rentedCar : rentedCars) {
-                if (rentedCar.getNumberPlate().equals(car.getNumberPlate())) {
-                    isRented = true;
-                    break;
-                }
-            }
-            String status = isRented ? "Rented" : "Available";
-            carsTableModel.addRow(new Object[]{
-                    car.getCarId(),
-                    car.getName(),
-                    car.getBrand(),
-                    car.getNumberPlate(),
-                    "$" + car.getRentPricePerDay(),
-                    "$" + car.getCostPrice(),
-                    car.getColor(),
-                    status
-            });
-        }
-        updateStatus("Displaying " + cars.size() + " car(s)");
+        carsTableModel.loadStarted();
+        runInBackground("Loading cars", () -> CarsTableModel.loadCars(controller), cars -> {
+            carsTableModel.setCars(cars);
+            updateStatus("Displaying " + cars.size() + " car(s)");
+        }, error -> {
+            carsTableModel.loadFailed();
+            showFailure("Loading cars", error);
+        });
     }
 
     private void refreshCustomersTable() {
-        customersTableModel.setRowCount(0);
-        List<Customer> customers = controller.getAllCustomers();
-        for (Customer customer : customers) {
-            customersTableModel.addRow(new Object[]{
-                    customer.getCustomerId(),
-                    customer.getName(),
-                    customer.getAge(),
-                    customer.getLicenseNumber(),
-                    customer.getNationalIDNumber()
-            });
+        customersTableModel.loadStarted();
+        runInBackground("Loading customers", () -> CustomersTableModel.loadCustomers(controller), customers -> {
+            customersTableModel.setCustomers(customers);
+            updateStatus("Displaying " + customers.size() + " customer(s)");
+        }, error -> {
+            customersTableModel.loadFailed();
+            showFailure("Loading customers", error);
+        });
+    }
+
+    private JPanel createOverduePanel() {
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        // Table setup
+        overdueTableModel = new OverdueTableModel();
+        controller.addControllerListener(overdueTableModel);
+        JTable overdueTable = new JTable(overdueTableModel);
+        overdueTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        overdueTable.setFont(new Font("Arial", Font.PLAIN, 12));
+        overdueTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 12));
+        overdueTable.setRowHeight(25);
+        overdueTable.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
+        JScrollPane scrollPane = new JScrollPane(overdueTable);
+        scrollPane.setBorder(BorderFactory.createTitledBorder("Rentals Past Their Due Date"));
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        // Buttons panel
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 5));
+        buttonPanel.setBorder(BorderFactory.createTitledBorder("Actions"));
+
+        JButton returnButton = new JButton("↩️ Return Car");
+        returnButton.setPreferredSize(new Dimension(130, 30));
+        returnButton.addActionListener(e -> {
+            showReturnCarDialog();
+            updateStatus("Rental management - Return a car");
+        });
+
+        JButton refreshButton = new JButton("🔄 Refresh");
+        refreshButton.setPreferredSize(new Dimension(120, 30));
+        refreshButton.addActionListener(e -> {
+            refreshOverdueTable();
+            updateStatus("Overdue table refreshed");
+        });
+
+        buttonPanel.add(returnButton);
+        buttonPanel.add(refreshButton);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        refreshOverdueTable();
+        return panel;
+    }
+
+    // Shows the controller's live counters, refreshed on a timer; reading them costs the same at any fleet size
+    private JPanel createDashboardPanel() {
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        FleetCounters counters = controller.getFleetCounters();
+
+        JPanel totalsPanel = new JPanel(new GridLayout(2, 4, 10, 10));
+        totalsPanel.setBorder(BorderFactory.createTitledBorder("Fleet"));
+        JLabel carsLabel = new JLabel();
+        JLabel availableLabel = new JLabel();
+        JLabel rentedLabel = new JLabel();
+        JLabel heldLabel = new JLabel();
+        JLabel overdueLabel = new JLabel();
+        JLabel customersLabel = new JLabel();
+        JLabel revenueLabel = new JLabel();
+        for (JLabel label : new JLabel[] {carsLabel, availableLabel, rentedLabel, heldLabel, overdueLabel, customersLabel, revenueLabel}) {
+            label.setFont(new Font("Arial", Font.BOLD, 14));
+            totalsPanel.add(label);
         }
-        updateStatus("Displaying " + customers.size() + " customer(s)");
+        panel.add(totalsPanel, BorderLayout.NORTH);
+
+        FleetCountsTableModel brandsModel = FleetCountsTableModel.byBrand(counters);
+        FleetCountsTableModel namesModel = FleetCountsTableModel.byName(counters);
+        JPanel countsPanel = new JPanel(new GridLayout(1, 2, 10, 10));
+        countsPanel.add(createCountsPane(brandsModel, "Cars by Brand"));
+        countsPanel.add(createCountsPane(namesModel, "Cars by Name"));
+        panel.add(countsPanel, BorderLayout.CENTER);
+
+        Runnable refresh = () -> {
+            carsLabel.setText("Cars: " + counters.getCars());
+            availableLabel.setText("Available: " + counters.getAvailable());
+            rentedLabel.setText("Rented: " + counters.getRented());
+            heldLabel.setText("On hold: " + counters.getHeld());
+            overdueLabel.setText("Overdue: " + counters.getOverdue());
+            customersLabel.setText("Customers renting: " + counters.getCustomersWithRentals());
+            revenueLabel.setText("Outstanding revenue: $" + counters.getOutstandingRevenue());
+            brandsModel.refresh();
+            namesModel.refresh();
+        };
+        refresh.run();
+        new Timer(DASHBOARD_REFRESH_MILLIS, e -> refresh.run()).start();
+        return panel;
     }
 
-    private void refreshRentalsTable() {
-        rentalsTableModel.setRowCount(0);
-        List<Car> rentedCars = controller.getRentedCars();
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        int count = 0;
-        for (Car car : rentedCars) {
-            if (car.getCurrentUser() != null) {
-                String dateStr = car.getDateOfRent() != null ? sdf.format(car.getDateOfRent()) : "N/A";
-                rentalsTableModel.addRow(new Object[]{
-                        car.getCurrentUser().getLicenseNumber(),
-                        car.getNumberPlate(),
-                        car.getName(),
-                        dateStr,
-                        car.getNumberOfDays() + " day(s)",
-                        "$" + car.getTotalRentPrice()
-                });
-                count++;
+    private JScrollPane createCountsPane(FleetCountsTableModel model, String title) {
+        JTable table = new JTable(model);
+        table.setFont(new Font("Arial", Font.PLAIN, 12));
+        table.getTableHeader().setFont(new Font("Arial", Font.BOLD, 12));
+        table.setRowHeight(25);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setBorder(BorderFactory.createTitledBorder(title));
+        return scrollPane;
+    }
+
+    private JPanel createReportsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        // Table setup
+        reportTableModel = new ReportTableModel();
+        JTable reportTable = new JTable(reportTableModel);
+        reportTable.setFont(new Font("Arial", Font.PLAIN, 12));
+        reportTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 12));
+        reportTable.setRowHeight(25);
+        reportTable.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
+        JScrollPane scrollPane = new JScrollPane(reportTable);
+        scrollPane.setBorder(BorderFactory.createTitledBorder("Report"));
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        // Buttons panel
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 5));
+        buttonPanel.setBorder(BorderFactory.createTitledBorder("Reports"));
+
+        JButton revenueButton = new JButton("💰 Revenue by Brand");
+        revenueButton.setPreferredSize(new Dimension(180, 30));
+        revenueButton.addActionListener(e -> showRevenueReport(scrollPane));
+
+        JButton utilizationButton = new JButton("📊 Utilization");
+        utilizationButton.setPreferredSize(new Dimension(140, 30));
+        utilizationButton.addActionListener(e -> showUtilizationReport(scrollPane));
+
+        JButton topCustomersButton = new JButton("🏆 Top Customers");
+        topCustomersButton.setPreferredSize(new Dimension(160, 30));
+        topCustomersButton.addActionListener(e -> showTopCustomersReport(scrollPane));
+
+        buttonPanel.add(revenueButton);
+        buttonPanel.add(utilizationButton);
+        buttonPanel.add(topCustomersButton);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    // Revenue of each brand on each of the last days, the latest day first
+    private void showRevenueReport(JScrollPane scrollPane) {
+        runInBackground("Computing revenue by brand", () -> {
+            DailyRevenue revenue = RentalAnalytics.of(controller).revenueByBrandPerDay();
+            int today = RentalLedger.epochDay(new Date());
+            List<Object[]> rows = new ArrayList<>();
+            for (int day = today; day > today - REPORT_DAYS; day--) {
+                for (int brand = 0; brand < revenue.getBrands().size(); brand++) {
+                    long amount = revenue.getRevenue(brand, day);
+                    if (amount > 0) {
+                        rows.add(new Object[] {LocalDate.ofEpochDay(day), revenue.getBrands().get(brand), "$" + amount});
+                    }
+                }
             }
-        }
-        updateStatus("Displaying " + count + " active rental(s)");
+            return rows;
+        }, rows -> {
+            reportTableModel.setReport(new String[] {"Day", "Brand", "Revenue"}, rows);
+            scrollPane.setBorder(BorderFactory.createTitledBorder("Revenue by Brand per Day, Last " + REPORT_DAYS + " Days"));
+            updateStatus("Revenue report ready");
+        });
+    }
+
+    private void showUtilizationReport(JScrollPane scrollPane) {
+        runInBackground("Computing utilization", () -> {
+            int today = RentalLedger.epochDay(new Date());
+            List<Object[]> rows = new ArrayList<>();
+            for (CarUtilization utilization : RentalAnalytics.of(controller).utilizationPerCar(today - REPORT_DAYS + 1, today + 1, today)) {
+                Car car = controller.findCarById(utilization.getCarId());
+                if (car != null) {
+                    rows.add(new Object[] {car.getNumberPlate(), car.getName(), utilization.getBrand(),
+                            utilization.getRentedDays(), Math.round(utilization.getUtilization() * 100) + "%"});
+                }
+            }
+            return rows;
+        }, rows -> {
+            reportTableModel.setReport(new String[] {"Car License Plate", "Car Name", "Brand", "Days Rented", "Utilization"}, rows);
+            scrollPane.setBorder(BorderFactory.createTitledBorder("Utilization per Car, Last " + REPORT_DAYS + " Days"));
+            updateStatus("Utilization report ready");
+        });
+    }
+
+    private void showTopCustomersReport(JScrollPane scrollPane) {
+        runInBackground("Computing top customers", () -> {
+            List<Object[]> rows = new ArrayList<>();
+            int rank = 1;
+            for (CustomerRevenue revenue : RentalAnalytics.of(controller).topCustomers(20)) {
+                Customer customer = controller.findCustomerById(revenue.getCustomerId());
+                rows.add(new Object[] {rank++,
+                        customer != null ? customer.getLicenseNumber() : "N/A",
+                        customer != null ? customer.getName() : "(removed)",
+                        revenue.getRentals(), "$" + revenue.getRevenue()});
+            }
+            return rows;
+        }, rows -> {
+            reportTableModel.setReport(new String[] {"Rank", "Customer License", "Customer Name", "Rentals", "Revenue"}, rows);
+            scrollPane.setBorder(BorderFactory.createTitledBorder("Top Customers by Revenue"));
+            updateStatus("Top customers report ready");
+        });
+    }
+
+    private void refreshOverdueTable() {
+        overdueTableModel.loadStarted();
+        runInBackground("Loading overdue rentals", () -> OverdueTableModel.loadOverdue(controller), overdue -> {
+            overdueTableModel.setOverdue(overdue);
+            updateStatus("Displaying " + overdue.size() + " overdue rental(s)");
+        }, error -> {
+            overdueTableModel.loadFailed();
+            showFailure("Loading overdue rentals", error);
+        });
+    }
+
+    private void refreshRentalsTable() {
+        rentalsTableModel.loadStarted();
+        runInBackground("Loading rentals", () -> RentalsTableModel.loadRentals(controller), rentals -> {
+            rentalsTableModel.setRentals(rentals);
+            updateStatus("Displaying " + rentals.size() + " active rental(s)");
+        }, error -> {
+            rentalsTableModel.loadFailed();
+            showFailure("Loading rentals", error);
+        });
     }
 
     private void showAddCarDialog() {
@@ -465,11 +781,14 @@ public class CarRentalGUI extends JFrame {
                     return;
                 }
 
-                controller.addNewCar(name, brand, plate, price, cost, color);
-                JOptionPane.showMessageDialog(dialog, "Car added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshCarsTable();
-                updateStatus("Car '" + name + "' added successfully");
-                dialog.dispose();
+                runChange("Adding car", addButton, () -> {
+                    controller.addNewCar(name, brand, plate, price, cost, color);
+                    return null;
+                }, added -> {
+                    JOptionPane.showMessageDialog(dialog, "Car added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    updateStatus("Car '" + name + "' added successfully");
+                    dialog.dispose();
+                }, error -> showChangeFailure(dialog, "Adding car", error));
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Invalid number format!");
             }
@@ -529,11 +848,14 @@ public class CarRentalGUI extends JFrame {
                     return;
                 }
 
-                controller.addNewCustomer(name, age, license, nationalID);
-                JOptionPane.showMessageDialog(dialog, "Customer added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshCustomersTable();
-                updateStatus("Customer '" + name + "' added successfully");
-                dialog.dispose();
+                runChange("Adding customer", addButton, () -> {
+                    controller.addNewCustomer(name, age, license, nationalID);
+                    return null;
+                }, added -> {
+                    JOptionPane.showMessageDialog(dialog, "Customer added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    updateStatus("Customer '" + name + "' added successfully");
+                    dialog.dispose();
+                }, error -> showChangeFailure(dialog, "Adding customer", error));
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Invalid age format!");
             }
@@ -564,13 +886,37 @@ public class CarRentalGUI extends JFrame {
 
         panel.add(new JLabel("Customer License Number:"));
         panel.add(customerLicenseField);
-        panel.add(new JLabel("Car License Plate:"));
+        panel.add(new JLabel("Car License Plate(s):"));
         panel.add(carPlateField);
         panel.add(new JLabel("Number of Days:"));
         panel.add(daysField);
 
+        JButton holdButton = new JButton("Hold");
         JButton rentButton = new JButton("Rent");
         JButton cancelButton = new JButton("Cancel");
+        List<String> heldPlates = new ArrayList<>();
+
+        // Keeps the car(s) from being rented elsewhere while the rest of the dialog is filled in
+        holdButton.addActionListener(e -> {
+            String customerLicense = customerLicenseField.getText().trim();
+            String carPlate = carPlateField.getText().trim();
+            if (customerLicense.isEmpty() || carPlate.isEmpty()) {
+                JOptionPane.showMessageDialog(dialog, "Please enter the customer and the car(s) to hold!");
+                return;
+            }
+            StringBuilder message = new StringBuilder();
+            for (String plate : carPlate.split(",")) {
+                if (plate.trim().isEmpty()) {
+                    continue;
+                }
+                String result = controller.holdCar(customerLicense, plate.trim(), HOLD_MINUTES, TimeUnit.MINUTES);
+                if (result.startsWith("Car is held")) {
+                    heldPlates.add(plate.trim());
+                }
+                message.append(plate.trim()).append(": ").append(result).append("\n");
+            }
+            JOptionPane.showMessageDialog(dialog, message.toString(), "Hold", JOptionPane.INFORMATION_MESSAGE);
+        });
 
         rentButton.addActionListener(e -> {
             try {
@@ -583,16 +929,52 @@ public class CarRentalGUI extends JFrame {
                     return;
                 }
 
-                String result = controller.rentCar(customerLicense, carPlate, days);
-                if (result.startsWith("Successfully")) {
-                    JOptionPane.showMessageDialog(dialog, result, "Success", JOptionPane.INFORMATION_MESSAGE);
-                    refreshCarsTable();
-                    refreshRentalsTable();
-                    updateStatus("Car rented successfully");
-                    dialog.dispose();
-                } else {
-                    JOptionPane.showMessageDialog(dialog, result, "Error", JOptionPane.ERROR_MESSAGE);
+                // Several plates separated by commas are rented together, all or none
+                if (carPlate.contains(",")) {
+                    List<String> plates = new ArrayList<>();
+                    for (String plate : carPlate.split(",")) {
+                        if (!plate.trim().isEmpty()) {
+                            plates.add(plate.trim());
+                        }
+                    }
+                    runChange("Renting cars", rentButton, () -> controller.rentCars(customerLicense, plates, days), results -> {
+                        StringBuilder message = new StringBuilder();
+                        int total = 0;
+                        for (RentalResult result : results) {
+                            message.append(result).append("\n");
+                            if (result.isRented()) {
+                                total += result.getCar().getTotalRentPrice();
+                            }
+                        }
+                        if (!results.isEmpty() && results.get(0).isRented()) {
+                            message.append("Total price: ").append(total);
+                            JOptionPane.showMessageDialog(dialog, message.toString(), "Success", JOptionPane.INFORMATION_MESSAGE);
+                            updateStatus(results.size() + " cars rented successfully");
+                            dialog.dispose();
+                        } else {
+                            JOptionPane.showMessageDialog(dialog, "No car was rented:\n" + message, "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    });
+                    return;
                 }
+
+                runChange("Renting car", rentButton, () -> controller.rentCar(customerLicense, carPlate, days), result -> {
+                    if (result.startsWith("Successfully")) {
+                        JOptionPane.showMessageDialog(dialog, result, "Success", JOptionPane.INFORMATION_MESSAGE);
+                        updateStatus("Car rented successfully");
+                        dialog.dispose();
+                    } else if (result.equals("Car is not available for rent.")) {
+                        runInBackground("Looking for similar cars", () -> controller.findAlternatives(carPlate, 5), alternatives -> {
+                            updateStatus("Found " + alternatives.size() + " similar car(s)");
+                            String alternative = chooseAlternativeCar(dialog, alternatives);
+                            if (alternative != null) {
+                                carPlateField.setText(alternative);
+                            }
+                        });
+                    } else {
+                        JOptionPane.showMessageDialog(dialog, result, "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Invalid number of days!");
             }
@@ -600,7 +982,21 @@ public class CarRentalGUI extends JFrame {
 
         cancelButton.addActionListener(e -> dialog.dispose());
 
+        // However the dialog goes away, the cars held from it are made available again; a car that was just
+        // rented is no longer held, so releasing it does nothing
+        dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                for (String plate : heldPlates) {
+                    controller.releaseHold(plate);
+                }
+                heldPlates.clear();
+            }
+        });
+
         JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.add(holdButton);
         buttonPanel.add(rentButton);
         buttonPanel.add(cancelButton);
 
@@ -609,18 +1005,43 @@ public class CarRentalGUI extends JFrame {
         dialog.setVisible(true);
     }
 
+    // Offers the closest available cars by price of the same brand or color, returns the chosen plate or null
+    private String chooseAlternativeCar(Component parent, List<Car> alternatives) {
+        if (alternatives.isEmpty()) {
+            JOptionPane.showMessageDialog(parent, "Car is not available for rent.\nNo similar cars are available.", "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+        String[] options = new String[alternatives.size()];
+        for (int i = 0; i < options.length; i++) {
+            Car car = alternatives.get(i);
+            options[i] = car.getNumberPlate() + " - " + car.getBrand() + " " + car.getName()
+                    + ", " + car.getColor() + ", $" + car.getRentPricePerDay() + "/day";
+        }
+        Object choice = JOptionPane.showInputDialog(parent,
+                "Car is not available for rent.\nChoose a similar available car:",
+                "Alternatives", JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        if (choice == null) {
+            return null;
+        }
+        for (int i = 0; i < options.length; i++) {
+            if (options[i].equals(choice)) {
+                return alternatives.get(i).getNumberPlate();
+            }
+        }
+        return null;
+    }
+
     private void showReturnCarDialog() {
         String plate = JOptionPane.showInputDialog(this, "Enter car license plate number to return:", "Return Car", JOptionPane.QUESTION_MESSAGE);
         if (plate != null && !plate.trim().isEmpty()) {
-            String result = controller.releaseCarWithMessage(plate.trim());
-            if (result.contains("Successfully")) {
-                JOptionPane.showMessageDialog(this, result, "Success", JOptionPane.INFORMATION_MESSAGE);
-                updateStatus("Car returned successfully");
-            } else {
-                JOptionPane.showMessageDialog(this, result, "Information", JOptionPane.INFORMATION_MESSAGE);
-            }
-            refreshCarsTable();
-            refreshRentalsTable();
+            runInBackground("Returning car", () -> controller.releaseCarWithMessage(plate.trim()), result -> {
+                if (result.contains("Successfully")) {
+                    JOptionPane.showMessageDialog(this, result, "Success", JOptionPane.INFORMATION_MESSAGE);
+                    updateStatus("Car returned successfully");
+                } else {
+                    JOptionPane.showMessageDialog(this, result, "Information", JOptionPane.INFORMATION_MESSAGE);
+                }
+            });
         }
     }
 
@@ -629,15 +1050,14 @@ public class CarRentalGUI extends JFrame {
         if (plate != null && !plate.trim().isEmpty()) {
             int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete this car?\nThis action cannot be undone.", "Confirm Deletion", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
             if (confirm == JOptionPane.YES_OPTION) {
-                String result = controller.removeCarWithMessage(plate.trim());
-                if (result.contains("SUCCESSFULLY")) {
-                    JOptionPane.showMessageDialog(this, result, "Success", JOptionPane.INFORMATION_MESSAGE);
-                    updateStatus("Car deleted successfully");
-                } else {
-                    JOptionPane.showMessageDialog(this, result, "Error", JOptionPane.ERROR_MESSAGE);
-                }
-                refreshCarsTable();
-                refreshRentalsTable();
+                runInBackground("Deleting car", () -> controller.removeCarWithMessage(plate.trim()), result -> {
+                    if (result.contains("SUCCESSFULLY")) {
+                        JOptionPane.showMessageDialog(this, result, "Success", JOptionPane.INFORMATION_MESSAGE);
+                        updateStatus("Car deleted successfully");
+                    } else {
+                        JOptionPane.showMessageDialog(this, result, "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
             }
         }
     }
@@ -647,14 +1067,14 @@ public class CarRentalGUI extends JFrame {
         if (license != null && !license.trim().isEmpty()) {
             int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete this customer?\nThis action cannot be undone.", "Confirm Deletion", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
             if (confirm == JOptionPane.YES_OPTION) {
-                String result = controller.removeCustomerWithMessage(license.trim());
-                if (result.contains("SUCCESSFULLY")) {
-                    JOptionPane.showMessageDialog(this, result, "Success", JOptionPane.INFORMATION_MESSAGE);
-                    updateStatus("Customer deleted successfully");
-                } else {
-                    JOptionPane.showMessageDialog(this, result, "Error", JOptionPane.ERROR_MESSAGE);
-                }
-                refreshCustomersTable();
+                runInBackground("Deleting customer", () -> controller.removeCustomerWithMessage(license.trim()), result -> {
+                    if (result.contains("SUCCESSFULLY")) {
+                        JOptionPane.showMessageDialog(this, result, "Success", JOptionPane.INFORMATION_MESSAGE);
+                        updateStatus("Customer deleted successfully");
+                    } else {
+                        JOptionPane.showMessageDialog(this, result, "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
             }
         }
     }
@@ -694,14 +1114,23 @@ public class CarRentalGUI extends JFrame {
 
             saveButton.addActionListener(e -> {
                 try {
-                    car.setColor(colorField.getText().trim());
-                    car.setRentPricePerDay(Integer.parseInt(priceField.getText().trim()));
-                    car.setCostPrice(Integer.parseInt(costField.getText().trim()));
-                    car.setNumberPlate(plateField.getText().trim());
-                    JOptionPane.showMessageDialog(dialog, "Car updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    refreshCarsTable();
-                    updateStatus("Car details updated successfully");
-                    dialog.dispose();
+                    String newPlate = plateField.getText().trim();
+                    Car existingCar = controller.findCar(newPlate);
+                    if (newPlate.isEmpty() || (existingCar != null && existingCar != car)) {
+                        JOptionPane.showMessageDialog(dialog, "Car with license plate " + newPlate + " already exists!");
+                        return;
+                    }
+                    int price = Integer.parseInt(priceField.getText().trim());
+                    int cost = Integer.parseInt(costField.getText().trim());
+                    String color = colorField.getText().trim();
+                    runChange("Updating car", saveButton, () -> {
+                        controller.modifyCar(car.getNumberPlate(), newPlate, color, price, cost);
+                        return null;
+                    }, updated -> {
+                        JOptionPane.showMessageDialog(dialog, "Car updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                        updateStatus("Car details updated successfully");
+                        dialog.dispose();
+                    }, error -> showChangeFailure(dialog, "Updating car", error));
                 } catch (NumberFormatException ex) {
                     JOptionPane.showMessageDialog(dialog, "Invalid number format!");
                 }
@@ -721,12 +1150,13 @@ public class CarRentalGUI extends JFrame {
 
     private void showSearchCarDialog() {
         JDialog dialog = new JDialog(this, "Search Car", true);
-        dialog.setSize(350, 150);
+        dialog.setSize(350, 180);
         dialog.setLocationRelativeTo(this);
 
-        JPanel panel = new JPanel(new GridLayout(3, 1, 5, 5));
+        JPanel panel = new JPanel(new GridLayout(4, 1, 5, 5));
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
+        JCheckBox ignoreCaseBox = new JCheckBox("Ignore case for name and brand", true);
         JButton searchByNameButton = new JButton("Search by Name");
         JButton searchByBrandButton = new JButton("Search by Brand");
         JButton searchByPlateButton = new JButton("Search by License Plate");
@@ -734,16 +1164,18 @@ public class CarRentalGUI extends JFrame {
         searchByNameButton.addActionListener(e -> {
             String name = JOptionPane.showInputDialog(dialog, "Enter car name:");
             if (name != null && !name.trim().isEmpty()) {
-                List<Car> cars = controller.getCarsByName(name.trim());
-                showCarSearchResults(cars, "Cars with name: " + name);
+                boolean ignoreCase = ignoreCaseBox.isSelected();
+                runInBackground("Searching cars by name", () -> controller.getCarsByName(name.trim(), ignoreCase),
+                        cars -> showCarSearchResults(cars, "Cars with name: " + name));
             }
         });
 
         searchByBrandButton.addActionListener(e -> {
             String brand = JOptionPane.showInputDialog(dialog, "Enter car brand:");
             if (brand != null && !brand.trim().isEmpty()) {
-                List<Car> cars = controller.getCarsByBrand(brand.trim());
-                showCarSearchResults(cars, "Cars with brand: " + brand);
+                boolean ignoreCase = ignoreCaseBox.isSelected();
+                runInBackground("Searching cars by brand", () -> controller.getCarsByBrand(brand.trim(), ignoreCase),
+                        cars -> showCarSearchResults(cars, "Cars with brand: " + brand));
             }
         });
 
@@ -759,6 +1191,7 @@ public class CarRentalGUI extends JFrame {
             }
         });
 
+        panel.add(ignoreCaseBox);
         panel.add(searchByNameButton);
         panel.add(searchByBrandButton);
         panel.add(searchByPlateButton);
@@ -768,6 +1201,7 @@ public class CarRentalGUI extends JFrame {
     }
 
     private void showCarSearchResults(List<Car> cars, String title) {
+        updateStatus(title + " - " + cars.size() + " car(s) found");
         if (cars.isEmpty()) {
             JOptionPane.showMessageDialog(this, "No cars found!", "Search Results", JOptionPane.INFORMATION_MESSAGE);
             return;
@@ -777,26 +1211,7 @@ public class CarRentalGUI extends JFrame {
         dialog.setSize(800, 400);
         dialog.setLocationRelativeTo(this);
 
-        String[] columns = {"ID", "Name", "Brand", "License Plate", "Price/Day", "Cost Price", "Color"};
-        DefaultTableModel model = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
-        for (Car car : cars) {
-            model.addRow(new Object[]{
-                    car.getCarId(),
-                    car.getName(),
-                    car.getBrand(),
-                    car.getNumberPlate(),
-                    "$" + car.getRentPricePerDay(),
-                    "$" + car.getCostPrice(),
-                    car.getColor()
-            });
-        }
-
-        JTable table = new JTable(model);
+        JTable table = new JTable(new CarListTableModel(cars));
         table.setFont(new Font("Arial", Font.PLAIN, 12));
         table.getTableHeader().setFont(new Font("Arial", Font.BOLD, 12));
         table.setRowHeight(25);
@@ -807,8 +1222,8 @@ public class CarRentalGUI extends JFrame {
     }
 
     private void showAvailableCars() {
-        List<Car> cars = controller.getAvailableCars();
-        showCarSearchResults(cars, "Available Cars");
+        runInBackground("Loading available cars", controller::getAvailableCars,
+                cars -> showCarSearchResults(cars, "Available Cars"));
     }
 
     private void showCustomerDetailsDialog() {
@@ -0,0 +1,152 @@
+package main.view;
+
+import main.controller.Controller;
+import main.controller.ControllerListener;
+import main.model.Car;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Table model of the Cars tab. Keeps its own list of cars ordered by id, and cells are only built for the rows
+ * the table actually paints. The list is loaded in the background through loadCars and setCars, and controller
+ * events are applied as single-row inserts, updates and deletes instead of rebuilding the table.
+ */
+
+class CarsTableModel extends AbstractTableModel implements ControllerListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"ID", "Name", "Brand", "License Plate", "Price/Day", "Cost Price", "Color", "Status"};
+
+    private final Controller controller;
+    private List<Car> cars = new ArrayList<>();
+    private final TableEvents events = new TableEvents();
+
+    CarsTableModel(Controller controller) {
+        this.controller = controller;
+    }
+
+    // Method to copy the controller's cars into row order, safe to call off the EDT
+    static List<Car> loadCars(Controller controller) {
+        List<Car> rows = new ArrayList<>(controller.getAllCars());
+        rows.sort(Comparator.comparingInt(Car::getCarId));
+        return rows;
+    }
+
+    // Method to call on the EDT before loadCars runs, the events received until the rows are shown are applied to them again
+    void loadStarted() {
+        events.loadStarted();
+    }
+
+    // Method to call on the EDT when loadCars failed and the old rows stay
+    void loadFailed() {
+        events.loadFinished(false);
+    }
+
+    // Method to show rows produced by loadCars, must be called on the EDT
+    void setCars(List<Car> cars) {
+        this.cars = cars;
+        fireTableDataChanged();
+        events.loadFinished(true);
+    }
+
+    Car getCarAt(int row) {
+        return cars.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return cars.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Car car = cars.get(row);
+        switch (column) {
+            case 0: return car.getCarId();
+            case 1: return car.getName();
+            case 2: return car.getBrand();
+            case 3: return car.getNumberPlate();
+            case 4: return "$" + car.getRentPricePerDay();
+            case 5: return "$" + car.getCostPrice();
+            case 6: return car.getColor();
+            case 7: return controller.getCarStatus(car);
+            default: return null;
+        }
+    }
+
+    @Override
+    public void carAdded(Car car) {
+        events.apply(() -> {
+            int row = TableRows.search(cars, car.getCarId(), Car::getCarId);
+            if (row < 0) {
+                row = -row - 1;
+                cars.add(row, car);
+                fireTableRowsInserted(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void carRemoved(Car car) {
+        events.apply(() -> {
+            int row = TableRows.search(cars, car.getCarId(), Car::getCarId);
+            if (row >= 0) {
+                cars.remove(row);
+                fireTableRowsDeleted(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void carUpdated(Car car) {
+        updateRow(car);
+    }
+
+    @Override
+    public void carRented(Car car) {
+        updateRow(car);
+    }
+
+    @Override
+    public void carReleased(Car car) {
+        updateRow(car);
+    }
+
+    @Override
+    public void carOverdue(Car car) {
+        updateRow(car);
+    }
+
+    @Override
+    public void carHeld(Car car) {
+        updateRow(car);
+    }
+
+    @Override
+    public void carHoldEnded(Car car) {
+        updateRow(car);
+    }
+
+    private void updateRow(Car car) {
+        events.apply(() -> {
+            int row = TableRows.search(cars, car.getCarId(), Car::getCarId);
+            if (row >= 0) {
+                fireTableRowsUpdated(row, row);
+            }
+        });
+    }
+}
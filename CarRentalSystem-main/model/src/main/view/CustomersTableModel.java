@@ -0,0 +1,110 @@
+package main.view;
+
+import main.controller.Controller;
+import main.controller.ControllerListener;
+import main.model.Customer;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Table model of the Customers tab. Keeps its own list of customers ordered by id,
+ * so controller events insert, update or delete a single row.
+ */
+
+class CustomersTableModel extends AbstractTableModel implements ControllerListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"ID", "Name", "Age", "License Number", "National ID"};
+
+    private List<Customer> customers = new ArrayList<>();
+    private final TableEvents events = new TableEvents();
+
+    // Method to copy the controller's customers into row order, safe to call off the EDT
+    static List<Customer> loadCustomers(Controller controller) {
+        List<Customer> rows = new ArrayList<>(controller.getAllCustomers());
+        rows.sort(Comparator.comparingInt(Customer::getCustomerId));
+        return rows;
+    }
+
+    // Method to call on the EDT before loadCustomers runs, the events received until the rows are shown are applied to them again
+    void loadStarted() {
+        events.loadStarted();
+    }
+
+    // Method to call on the EDT when loadCustomers failed and the old rows stay
+    void loadFailed() {
+        events.loadFinished(false);
+    }
+
+    // Method to show rows produced by loadCustomers, must be called on the EDT
+    void setCustomers(List<Customer> customers) {
+        this.customers = customers;
+        fireTableDataChanged();
+        events.loadFinished(true);
+    }
+
+    @Override
+    public int getRowCount() {
+        return customers.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Customer customer = customers.get(row);
+        switch (column) {
+            case 0: return customer.getCustomerId();
+            case 1: return customer.getName();
+            case 2: return customer.getAge();
+            case 3: return customer.getLicenseNumber();
+            case 4: return customer.getNationalIDNumber();
+            default: return null;
+        }
+    }
+
+    @Override
+    public void customerAdded(Customer customer) {
+        events.apply(() -> {
+            int row = TableRows.search(customers, customer.getCustomerId(), Customer::getCustomerId);
+            if (row < 0) {
+                row = -row - 1;
+                customers.add(row, customer);
+                fireTableRowsInserted(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void customerRemoved(Customer customer) {
+        events.apply(() -> {
+            int row = TableRows.search(customers, customer.getCustomerId(), Customer::getCustomerId);
+            if (row >= 0) {
+                customers.remove(row);
+                fireTableRowsDeleted(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void customerUpdated(Customer customer) {
+        events.apply(() -> {
+            int row = TableRows.search(customers, customer.getCustomerId(), Customer::getCustomerId);
+            if (row >= 0) {
+                fireTableRowsUpdated(row, row);
+            }
+        });
+    }
+}
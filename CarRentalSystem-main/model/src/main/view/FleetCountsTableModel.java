@@ -0,0 +1,74 @@
+package main.view;
+
+import main.controller.FleetCounters;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Table model of the per-brand or per-name counts on the Dashboard tab. Cells are read straight from the
+ * controller's live counters, so refreshing the table never walks the car list.
+ */
+
+class FleetCountsTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] columns;
+    private final transient Supplier<Set<String>> keys;
+    private final transient ToIntFunction<String> availableOf;
+    private final transient ToIntFunction<String> rentedOf;
+    private List<String> rows = new ArrayList<>();
+
+    private FleetCountsTableModel(String keyColumn, Supplier<Set<String>> keys, ToIntFunction<String> availableOf,
+                                  ToIntFunction<String> rentedOf) {
+        this.columns = new String[] {keyColumn, "Available", "Rented"};
+        this.keys = keys;
+        this.availableOf = availableOf;
+        this.rentedOf = rentedOf;
+    }
+
+    static FleetCountsTableModel byBrand(FleetCounters counters) {
+        return new FleetCountsTableModel("Brand", counters::getBrands, counters::getAvailableByBrand, counters::getRentedByBrand);
+    }
+
+    static FleetCountsTableModel byName(FleetCounters counters) {
+        return new FleetCountsTableModel("Name", counters::getNames, counters::getAvailableByName, counters::getRentedByName);
+    }
+
+    // Method to pick up added and dropped rows and repaint the counts, must be called on the EDT
+    void refresh() {
+        rows = new ArrayList<>(keys.get());
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        String key = rows.get(row);
+        switch (column) {
+            case 0: return key;
+            case 1: return availableOf.applyAsInt(key);
+            case 2: return rentedOf.applyAsInt(key);
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package main.view;
+
+import main.controller.Controller;
+import main.controller.ControllerListener;
+import main.model.Car;
+import main.model.Customer;
+
+import javax.swing.table.AbstractTableModel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Table model of the Overdue tab. Keeps its own list of overdue rentals ordered by car id,
+ * so overdue and return events insert or delete a single row.
+ */
+
+class OverdueTableModel extends AbstractTableModel implements ControllerListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"Customer License", "Customer Name", "Car License Plate", "Car Name", "Due Date", "Days Overdue"};
+
+    private List<Car> overdue = new ArrayList<>();
+    private final TableEvents events = new TableEvents();
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+
+    // Method to copy the controller's overdue rentals into row order, safe to call off the EDT
+    static List<Car> loadOverdue(Controller controller) {
+        List<Car> rows = controller.getOverdueCars();
+        rows.sort(Comparator.comparingInt(Car::getCarId));
+        return rows;
+    }
+
+    // Method to call on the EDT before loadOverdue runs, the events received until the rows are shown are applied to them again
+    void loadStarted() {
+        events.loadStarted();
+    }
+
+    // Method to call on the EDT when loadOverdue failed and the old rows stay
+    void loadFailed() {
+        events.loadFinished(false);
+    }
+
+    // Method to show rows produced by loadOverdue, must be called on the EDT
+    void setOverdue(List<Car> overdue) {
+        this.overdue = overdue;
+        fireTableDataChanged();
+        events.loadFinished(true);
+    }
+
+    @Override
+    public int getRowCount() {
+        return overdue.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Car car = overdue.get(row);
+        Customer customer = car.getCurrentUser();
+        switch (column) {
+            case 0: return customer != null ? customer.getLicenseNumber() : "N/A";
+            case 1: return customer != null ? customer.getName() : "N/A";
+            case 2: return car.getNumberPlate();
+            case 3: return car.getName();
+            case 4: return car.getDateOfReturn() != null ? dateFormat.format(car.getDateOfReturn()) : "N/A";
+            case 5: return car.getDateOfReturn() != null
+                    ? TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis() - car.getDateOfReturn().getTime()) + " day(s)"
+                    : "N/A";
+            default: return null;
+        }
+    }
+
+    @Override
+    public void carOverdue(Car car) {
+        events.apply(() -> {
+            int row = TableRows.search(overdue, car.getCarId(), Car::getCarId);
+            if (row < 0) {
+                row = -row - 1;
+                overdue.add(row, car);
+                fireTableRowsInserted(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void carReleased(Car car) {
+        events.apply(() -> {
+            int row = TableRows.search(overdue, car.getCarId(), Car::getCarId);
+            if (row >= 0) {
+                overdue.remove(row);
+                fireTableRowsDeleted(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void carUpdated(Car car) {
+        events.apply(() -> {
+            int row = TableRows.search(overdue, car.getCarId(), Car::getCarId);
+            if (row >= 0) {
+                fireTableRowsUpdated(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void customerUpdated(Customer customer) {
+        for (Car car : customer.getCarsRented()) {
+            carUpdated(car);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package main.view;
+
+import main.controller.Controller;
+import main.controller.ControllerListener;
+import main.model.Car;
+import main.model.Customer;
+
+import javax.swing.table.AbstractTableModel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Table model of the Rentals tab. Keeps its own list of rented cars ordered by car id,
+ * so rent and return events insert or delete a single row.
+ */
+
+class RentalsTableModel extends AbstractTableModel implements ControllerListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"Customer License", "Car License Plate", "Car Name", "Date of Rent", "Days", "Total Price"};
+
+    private List<Car> rentals = new ArrayList<>();
+    private final TableEvents events = new TableEvents();
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+
+    // Method to copy the controller's rented cars into row order, safe to call off the EDT
+    static List<Car> loadRentals(Controller controller) {
+        List<Car> rows = new ArrayList<>(controller.getRentedCars());
+        rows.sort(Comparator.comparingInt(Car::getCarId));
+        return rows;
+    }
+
+    // Method to call on the EDT before loadRentals runs, the events received until the rows are shown are applied to them again
+    void loadStarted() {
+        events.loadStarted();
+    }
+
+    // Method to call on the EDT when loadRentals failed and the old rows stay
+    void loadFailed() {
+        events.loadFinished(false);
+    }
+
+    // Method to show rows produced by loadRentals, must be called on the EDT
+    void setRentals(List<Car> rentals) {
+        this.rentals = rentals;
+        fireTableDataChanged();
+        events.loadFinished(true);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rentals.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Car car = rentals.get(row);
+        Customer customer = car.getCurrentUser();
+        switch (column) {
+            case 0: return customer != null ? customer.getLicenseNumber() : "N/A";
+            case 1: return car.getNumberPlate();
+            case 2: return car.getName();
+            case 3: return car.getDateOfRent() != null ? dateFormat.format(car.getDateOfRent()) : "N/A";
+            case 4: return car.getNumberOfDays() + " day(s)";
+            case 5: return "$" + car.getTotalRentPrice();
+            default: return null;
+        }
+    }
+
+    @Override
+    public void carRented(Car car) {
+        events.apply(() -> {
+            int row = TableRows.search(rentals, car.getCarId(), Car::getCarId);
+            if (row < 0) {
+                row = -row - 1;
+                rentals.add(row, car);
+                fireTableRowsInserted(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void carReleased(Car car) {
+        events.apply(() -> {
+            int row = TableRows.search(rentals, car.getCarId(), Car::getCarId);
+            if (row >= 0) {
+                rentals.remove(row);
+                fireTableRowsDeleted(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void carUpdated(Car car) {
+        events.apply(() -> {
+            int row = TableRows.search(rentals, car.getCarId(), Car::getCarId);
+            if (row >= 0) {
+                fireTableRowsUpdated(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void customerUpdated(Customer customer) {
+        for (Car car : customer.getCarsRented()) {
+            carUpdated(car);
+        }
+    }
+}
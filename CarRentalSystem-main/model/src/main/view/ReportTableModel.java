@@ -0,0 +1,45 @@
+package main.view;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table model of the Reports tab. A report is computed off the EDT into plain rows, which then replace the
+ * columns and rows shown, so the same table serves every report.
+ */
+
+class ReportTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private String[] columns = new String[0];
+    private List<Object[]> rows = new ArrayList<>();
+
+    // Method to show a computed report, must be called on the EDT
+    void setReport(String[] columns, List<Object[]> rows) {
+        this.columns = columns;
+        this.rows = rows;
+        fireTableStructureChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return rows.get(row)[column];
+    }
+}
@@ -0,0 +1,48 @@
+package main.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Controller events of one table model, applied on the Event Dispatch Thread. The rows are loaded in the
+ * background from the controller's state at some moment after the load started, so an event applied to the old
+ * rows while the load runs may be missing from the new ones. The events received meanwhile are kept and applied
+ * again, in order, once the new rows are shown. An event only inserts, updates or deletes a row when the rows
+ * need it, so applying it a second time changes nothing.
+ */
+
+final class TableEvents {
+
+    private final List<Runnable> received = new ArrayList<>();
+    private int loading;
+
+    // Method to apply an event to the rows on the EDT, keeping it while a load is running
+    void apply(Runnable event) {
+        TableRows.onEventThread(() -> {
+            if (loading > 0) {
+                received.add(event);
+            }
+            event.run();
+        });
+    }
+
+    // Method to call on the EDT before the rows are loaded in the background
+    void loadStarted() {
+        loading++;
+    }
+
+    // Method to call on the EDT when a load ends, shown tells whether its rows replaced the old ones
+    void loadFinished(boolean shown) {
+        if (loading == 0) {
+            return;
+        }
+        if (shown) {
+            for (Runnable event : received) {
+                event.run();
+            }
+        }
+        if (--loading == 0) {
+            received.clear();
+        }
+    }
+}
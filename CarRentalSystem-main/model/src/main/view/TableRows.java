@@ -0,0 +1,42 @@
+package main.view;
+
+import javax.swing.SwingUtilities;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Helpers shared by the table models to locate rows and apply controller events on the Event Dispatch Thread
+ */
+
+final class TableRows {
+
+    private TableRows() {
+    }
+
+    // Binary search of rows sorted by id. Returns the row, or -(insertion point) - 1 when the id is not there.
+    static <T> int search(List<T> rows, int id, ToIntFunction<T> idOf) {
+        int low = 0;
+        int high = rows.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = idOf.applyAsInt(rows.get(middle));
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // Controller events may come from any thread, table models must only change on the EDT
+    static void onEventThread(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+        } else {
+            SwingUtilities.invokeLater(task);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 @echo off
 echo Compiling Car Rental System...
 cd model\src\main
-javac -d ..\..\..\out\production\CarRentalModule *.java controller\*.java model\*.java view\*.java
+javac -d ..\..\..\out\production\CarRentalModule *.java controller\*.java model\*.java persistence\*.java analytics\*.java view\*.java benchmark\*.java
 if %ERRORLEVEL% NEQ 0 (
     echo Compilation failed!
     pause